@@ -0,0 +1,78 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*JMH harness of the exhaustive searches of CurrencyConversion, on its map of Pair lists, and of CompactCurrencyGraph,
+on its CSR arrays, over generated markets of 8 to 12 currencies with 2 products per currency, small enough for an
+exhaustive search. Each benchmark cycles through the same 1024 random pairs of currencies.
+Run with java -jar benchmarks/target/benchmarks.jar CompactGraphBenchmark -prof gc: gc.alloc.rate.norm is the bytes
+allocated per query, which stays at 0 for the compact graph.*/
+
+package currencyconversion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactGraphBenchmark {
+    private static final int QUERIES = 1024;
+    private static final int PRODUCTS_PER_CURRENCY = 2;
+
+    @Param({ "8", "10", "12" })
+    public int currencyCount;
+
+    private CurrencyConversion pairGraph;
+    private CompactCurrencyGraph compactGraph;
+    private String[] from;
+    private String[] to;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MarketGenerator market = new MarketGenerator(currencyCount, PRODUCTS_PER_CURRENCY * currencyCount, 42);
+        pairGraph = new CurrencyConversion(market.conversions());
+        compactGraph = new CompactCurrencyGraph(market.conversions());
+
+        Random random = new Random(7);
+        from = new String[QUERIES];
+        to = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            from[i] = MarketGenerator.currency(random.nextInt(currencyCount));
+            to[i] = MarketGenerator.currency(random.nextInt(currencyCount));
+        }
+    }
+
+    private int nextQuery() {
+        query = (query + 1) & (QUERIES - 1);
+        return query;
+    }
+
+    @Benchmark
+    public double pairGraphRate() {
+        int i = nextQuery();
+        return pairGraph.getConversionRate(from[i], to[i]);
+    }
+
+    @Benchmark
+    public double compactGraphRate() {
+        int i = nextQuery();
+        return compactGraph.getConversionRate(from[i], to[i]);
+    }
+}
@@ -0,0 +1,87 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Generates markets priced consistently from one random price per currency, with a spread, so they have no arbitrage.
+Currencies C0 .. Cn-1 are first joined by a random spanning tree of products, so every pair of currencies has a
+conversion, then by random distinct products up to productCount.*/
+
+package currencyconversion;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+final class MarketGenerator {
+    private final Random random;
+    private final double[] prices;
+    private final int[] productA;
+    private final int[] productB;
+    private final double[] spreads;
+
+    MarketGenerator(int currencyCount, int productCount, long seed) {
+        if (currencyCount < 2 || productCount < currencyCount - 1 || productCount > (long) currencyCount * (currencyCount - 1) / 2) {
+            throw new IllegalArgumentException("productCount must be between currencyCount - 1 and every pair of currencies");
+        }
+        random = new Random(seed);
+        prices = new double[currencyCount];
+        for (int i = 0; i < currencyCount; i++) {
+            prices[i] = Math.exp(random.nextGaussian() * 3);
+        }
+        productA = new int[productCount];
+        productB = new int[productCount];
+        spreads = new double[productCount];
+        HashSet<Long> pairs = new HashSet<>();
+        for (int i = 0; i < productCount; i++) {
+            int a;
+            int b;
+            do {
+                a = i < currencyCount - 1 ? i + 1 : random.nextInt(currencyCount);
+                b = i < currencyCount - 1 ? random.nextInt(i + 1) : random.nextInt(currencyCount);
+            } while (a == b || !pairs.add((long) Math.min(a, b) * currencyCount + Math.max(a, b)));
+            productA[i] = a;
+            productB[i] = b;
+            spreads[i] = 0.001 + random.nextDouble() * 0.01;
+        }
+    }
+
+    static String currency(int i) {
+        return "C" + i;
+    }
+
+    double price(int i) {
+        return prices[i];
+    }
+
+    List<Conversion> conversions() {
+        List<Conversion> conversions = new ArrayList<>();
+        for (int i = 0; i < productA.length; i++) {
+            double mid = prices[productA[i]] / prices[productB[i]];
+            conversions.add(new Conversion(currency(productA[i]), currency(productB[i]), mid * (1 - spreads[i]), mid * (1 + spreads[i])));
+        }
+        return conversions;
+    }
+
+    /**
+     * Order books of the same products, with levels spread further apart from the mid price by the spread of the
+     * product. Each level holds a random size worth up to 1 unit of the price scale.
+     */
+    List<OrderBook> orderBooks(int levels) {
+        List<OrderBook> books = new ArrayList<>();
+        for (int i = 0; i < productA.length; i++) {
+            double mid = prices[productA[i]] / prices[productB[i]];
+            double[] bidPrices = new double[levels];
+            double[] bidSizes = new double[levels];
+            double[] askPrices = new double[levels];
+            double[] askSizes = new double[levels];
+            for (int level = 0; level < levels; level++) {
+                bidPrices[level] = mid * (1 - spreads[i] * (level + 1));
+                askPrices[level] = mid * (1 + spreads[i] * (level + 1));
+                bidSizes[level] = random.nextDouble() / prices[productA[i]];
+                askSizes[level] = random.nextDouble() / prices[productA[i]];
+            }
+            books.add(new OrderBook(currency(productA[i]), currency(productB[i]), bidPrices, bidSizes, askPrices, askSizes));
+        }
+        return books;
+    }
+}
@@ -0,0 +1,103 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*JMH harness of the response parsing of ConversionFetcher, streaming over the tokens against building a Jackson tree.
+The payloads are the fixtures book.json, a full depth book of 5000 orders per side, and products.json, a products list
+of 600 products with every field of the API, loaded from the resources of this module.
+Run with java -jar benchmarks/target/benchmarks.jar ParsingBenchmark -prof gc: gc.alloc.rate.norm is the bytes
+allocated per parse.*/
+
+package currencyconversion;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+    private static final String CONVERSION_ID = "BTC-USD";
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private byte[] book;
+    private byte[] products;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        book = readResource("book.json");
+        products = readResource("products.json");
+
+        // Both parsers must read the same values for the comparison to mean anything
+        JsonNode tree = mapper.readTree(book);
+        Conversion top = ConversionFetcher.parseTopOfBook(JSON.createParser(book), CONVERSION_ID);
+        OrderBook full = ConversionFetcher.parseOrderBook(JSON.createParser(book), CONVERSION_ID);
+        JsonNode asks = tree.path("asks");
+        int levels = asks.size();
+        if (top.bid != tree.path("bids").get(0).get(0).asDouble() || top.ask != asks.get(0).get(0).asDouble()
+                || full.askPrices.length != levels || full.askPrices[levels - 1] != asks.get(levels - 1).get(0).asDouble()
+                || ConversionFetcher.parseConversionIDs(JSON.createParser(products)).size() != mapper.readTree(products).size()) {
+            throw new IllegalStateException("The streaming parsers disagree with the tree of the fixtures.");
+        }
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream input = ParsingBenchmark.class.getResourceAsStream(name)) {
+            if (input == null) {
+                throw new FileNotFoundException(String.format("Missing resource %s.", name));
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1 << 16];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public double topOfBookTree() throws IOException {
+        return mapper.readTree(book).path("bids").get(0).get(0).asDouble();
+    }
+
+    @Benchmark
+    public double topOfBookStreaming() throws IOException {
+        return ConversionFetcher.parseTopOfBook(JSON.createParser(book), CONVERSION_ID).bid;
+    }
+
+    @Benchmark
+    public double fullBookStreaming() throws IOException {
+        return ConversionFetcher.parseOrderBook(JSON.createParser(book), CONVERSION_ID).bidPrices[0];
+    }
+
+    @Benchmark
+    public int productsTree() throws IOException {
+        return mapper.readTree(products).size();
+    }
+
+    @Benchmark
+    public int productsStreaming() throws IOException {
+        return ConversionFetcher.parseConversionIDs(JSON.createParser(products)).size();
+    }
+}
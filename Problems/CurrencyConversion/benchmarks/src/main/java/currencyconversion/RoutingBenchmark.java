@@ -0,0 +1,135 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*JMH harness of the routing engines on generated markets of 10 to 5000 currencies, with 2.5 products per currency.
+Each benchmark cycles through the same 1024 random pairs of currencies, and the cached routes through 32 hot pairs.
+Run with java -jar benchmarks/target/benchmarks.jar, adding -p currencyCount=1000 to pick a size.*/
+
+package currencyconversion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+    private static final int QUERIES = 1024;
+    private static final int HOT_PAIRS = 32;
+    private static final double PRODUCTS_PER_CURRENCY = 2.5;
+    private static final int BOOK_LEVELS = 50;
+    private static final int MAX_HOPS = 4;
+
+    @Param({ "10", "100", "1000", "5000" })
+    public int currencyCount;
+
+    private CurrencyRouter router;
+    private RouteCache routeCache;
+    private DepthRouter depthRouter;
+    private List<Conversion> conversions;
+    private String[] from;
+    private String[] to;
+    private double[] amounts;
+    // Pairs of currencies with a route of at most MAX_HOPS conversions
+    private String[] nearFrom;
+    private String[] nearTo;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MarketGenerator market = new MarketGenerator(currencyCount, (int) (PRODUCTS_PER_CURRENCY * currencyCount), 42);
+        conversions = market.conversions();
+        router = new CurrencyRouter(conversions);
+        routeCache = new RouteCache(conversions, HOT_PAIRS);
+        depthRouter = new DepthRouter(market.orderBooks(BOOK_LEVELS));
+
+        Random random = new Random(7);
+        from = new String[QUERIES];
+        to = new String[QUERIES];
+        amounts = new double[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int a = random.nextInt(currencyCount);
+            from[i] = MarketGenerator.currency(a);
+            to[i] = MarketGenerator.currency(random.nextInt(currencyCount));
+            // Worth a few levels of the books
+            amounts[i] = 2 / market.price(a);
+        }
+
+        nearFrom = new String[QUERIES];
+        nearTo = new String[QUERIES];
+        for (int i = 0; i < QUERIES; ) {
+            nearFrom[i] = MarketGenerator.currency(random.nextInt(currencyCount));
+            nearTo[i] = MarketGenerator.currency(random.nextInt(currencyCount));
+            try {
+                router.getBestRoute(nearFrom[i], nearTo[i], MAX_HOPS);
+                i++;
+            } catch (IllegalArgumentException e) {
+                // Too far apart, draw another pair
+            }
+        }
+    }
+
+    private int nextQuery() {
+        query = (query + 1) & (QUERIES - 1);
+        return query;
+    }
+
+    @Benchmark
+    public Route bestRoute() {
+        int i = nextQuery();
+        return router.getBestRoute(from[i], to[i]);
+    }
+
+    @Benchmark
+    public Route bestRouteInFourHops() {
+        int i = nextQuery();
+        return router.getBestRoute(nearFrom[i], nearTo[i], MAX_HOPS);
+    }
+
+    @Benchmark
+    public CurrencyRates conversionRatesTo() {
+        return router.getConversionRatesTo(to[nextQuery()]);
+    }
+
+    @Benchmark
+    public Route cachedBestRoute() {
+        int i = nextQuery() & (HOT_PAIRS - 1);
+        return routeCache.getBestRoute(from[i], to[i]);
+    }
+
+    @Benchmark
+    public double depthConversion() {
+        int i = nextQuery();
+        return depthRouter.convert(from[i], to[i], amounts[i]);
+    }
+
+    /**
+     * A quote then a query. Two calls in a row quote the same product, the first moving its bid down and the second
+     * back to the bid it was generated with, so every quote changes the graph. The product changes every two calls.
+     */
+    @Benchmark
+    public Route updateThenBestRoute() {
+        int i = nextQuery();
+        Conversion conversion = conversions.get((i >> 1) % conversions.size());
+        double bid = (i & 1) == 0 ? conversion.bid * 0.999 : conversion.bid;
+        router.update(new Conversion(conversion.currencyA, conversion.currencyB, bid, conversion.ask));
+        return router.getBestRoute(from[i], to[i]);
+    }
+}
@@ -0,0 +1,209 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Allocation free version of the currency graph of CurrencyConversion. Currencies are interned to ints, and the
+conversions stored as a CSR adjacency: the edges leaving currency c are targets[edgeStart[c] .. edgeStart[c + 1]),
+converting at the matching rates. The edges are in the same order as the Pair lists of createCurrencyGraph.
+getConversionRate runs the same exhaustive search over simple paths as CurrencyConversion, iteratively, on stacks
+and a bitset of the currencies on the current path which are allocated once and reused. Backtracking clears every
+bit it set, so the bitset is empty again at the end of each query. A query therefore allocates nothing, hashes
+only its two currency codes, and walks primitive arrays instead of boxed Doubles.
+CurrencyRouter finds the same best rates in polynomial time.
+
+Runtime Complexity:
+  * CompactCurrencyGraph is O(|Conversions|)
+  * getConversionRate is exponential in the worst case, the same as CurrencyConversion, with a smaller constant
+Space Complexity: O(|Vertices| + |Edges|)*/
+
+package currencyconversion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class CompactCurrencyGraph {
+    private final HashMap<String, Integer> currencyIds = new HashMap<>();
+    private final int[] edgeStart;
+    private final int[] targets;
+    private final double[] rates;
+
+    // Search stacks, indexed by depth on the current path
+    private final int[] pathCurrency;
+    private final int[] pathNextEdge;
+    private final double[] pathAmount;
+    private final long[] onPath;
+
+    public static void main(String[] args) {
+        List<Conversion> conversions = new ArrayList<>();
+        conversions.add(new Conversion("ETH", "USD", 5, 6));
+        conversions.add(new Conversion("ETH", "BTC", 2, 3));
+        conversions.add(new Conversion("BTC", "USD", 3, 4));
+        conversions.add(new Conversion("A", "B", 2, 3));
+        conversions.add(new Conversion("A", "C", 5, 6));
+        conversions.add(new Conversion("B", "C", 3, 4));
+        conversions.add(new Conversion("C", "D", 2, 3));
+        CompactCurrencyGraph graph = new CompactCurrencyGraph(conversions);
+        assert graph.getConversionRate("ETH", "USD") == 6.0;
+        assert graph.getConversionRate("A", "D") == 12.0;
+        assert graph.getConversionRate("USD", "ETH") == new CurrencyConversion(conversions).getConversionRate("USD", "ETH");
+        assert graph.getConversionRate("D", "D") == 1.0;
+        try {
+            graph.getConversionRate("A", "ETH");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("There is no conversion from A to ETH.");
+        }
+        try {
+            graph.getConversionRate("A", "XYZ");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Unknown currency XYZ.");
+        }
+
+        // Same rates as the Pair map on random markets small enough for an exhaustive search. CompactGraphBenchmark in
+        // the benchmarks module compares their time and allocations.
+        Random random = new Random(42);
+        for (int currencyCount = 8; currencyCount <= 12; currencyCount += 2) {
+            List<Conversion> market = new ArrayList<>();
+            for (int i = 1; i < currencyCount; i++) {
+                market.add(createConversion(i, random.nextInt(i), random));
+            }
+            // CurrencyConversion recurses for ever on a conversion of a currency to itself
+            while (market.size() < 2 * currencyCount) {
+                int a = random.nextInt(currencyCount);
+                int b = random.nextInt(currencyCount);
+                if (a != b) {
+                    market.add(createConversion(a, b, random));
+                }
+            }
+            CurrencyConversion pairGraph = new CurrencyConversion(market);
+            CompactCurrencyGraph compactGraph = new CompactCurrencyGraph(market);
+            for (int i = 0; i < 2000; i++) {
+                String from = "C" + random.nextInt(currencyCount);
+                String to = "C" + random.nextInt(currencyCount);
+                assert compactGraph.getConversionRate(from, to) == pairGraph.getConversionRate(from, to);
+            }
+        }
+
+        System.out.println("All tests passed.");
+    }
+
+    private static Conversion createConversion(int a, int b, Random random) {
+        double mid = Math.exp(random.nextGaussian());
+        return new Conversion("C" + a, "C" + b, mid * 0.99, mid * 1.01);
+    }
+
+    public CompactCurrencyGraph(List<Conversion> conversions) {
+        List<String> currencyList = new ArrayList<>();
+        for (Conversion conversion : conversions) {
+            internCurrency(conversion.currencyA, currencyList);
+            internCurrency(conversion.currencyB, currencyList);
+        }
+        int currencyCount = currencyList.size();
+
+        // Counting sort of the edges by the currency they leave, keeping the order of createCurrencyGraph
+        edgeStart = new int[currencyCount + 1];
+        for (Conversion conversion : conversions) {
+            edgeStart[currencyIds.get(conversion.currencyA) + 1]++;
+            edgeStart[currencyIds.get(conversion.currencyB) + 1]++;
+        }
+        for (int currency = 0; currency < currencyCount; currency++) {
+            edgeStart[currency + 1] += edgeStart[currency];
+        }
+        targets = new int[2 * conversions.size()];
+        rates = new double[2 * conversions.size()];
+        int[] next = new int[currencyCount];
+        System.arraycopy(edgeStart, 0, next, 0, currencyCount);
+        for (Conversion conversion : conversions) {
+            int currencyA = currencyIds.get(conversion.currencyA);
+            int currencyB = currencyIds.get(conversion.currencyB);
+            targets[next[currencyA]] = currencyB;
+            rates[next[currencyA]++] = conversion.bid;
+            targets[next[currencyB]] = currencyA;
+            rates[next[currencyB]++] = 1/conversion.ask;
+        }
+
+        pathCurrency = new int[currencyCount];
+        pathNextEdge = new int[currencyCount];
+        pathAmount = new double[currencyCount];
+        onPath = new long[(currencyCount + 63) / 64];
+    }
+
+    public int idOf(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format("Unknown currency %s.", currency));
+        }
+        return id;
+    }
+
+    public double getConversionRate(String fromCurrency, String toCurrency) {
+        double bestRate = getConversionRate(idOf(fromCurrency), idOf(toCurrency));
+        if (bestRate == -1) {
+            throw new IllegalArgumentException(String.format("There is no conversion from %s to %s.", fromCurrency, toCurrency));
+        }
+        return bestRate;
+    }
+
+    /**
+     * Returns the best rate from currency from to currency to over every simple path, or -1 if there is none.
+     */
+    public double getConversionRate(int from, int to) {
+        if (from == to) {
+            return 1.0;
+        }
+
+        double bestRate = -1.0;
+        int depth = 0;
+        pathCurrency[0] = from;
+        pathNextEdge[0] = edgeStart[from];
+        pathAmount[0] = 1.0;
+        setOnPath(from);
+        while (depth >= 0) {
+            int currency = pathCurrency[depth];
+            int edge = pathNextEdge[depth];
+            if (edge == edgeStart[currency + 1]) {
+                clearOnPath(currency);
+                depth--;
+                continue;
+            }
+            pathNextEdge[depth] = edge + 1;
+
+            int next = targets[edge];
+            if (isOnPath(next)) {
+                continue;
+            }
+            double amount = pathAmount[depth] * rates[edge];
+            if (next == to) {
+                bestRate = Math.max(bestRate, amount);
+                continue;
+            }
+            setOnPath(next);
+            depth++;
+            pathCurrency[depth] = next;
+            pathNextEdge[depth] = edgeStart[next];
+            pathAmount[depth] = amount;
+        }
+        return bestRate;
+    }
+
+    private void internCurrency(String currency, List<String> currencyList) {
+        if (!currencyIds.containsKey(currency)) {
+            currencyIds.put(currency, currencyList.size());
+            currencyList.add(currency);
+        }
+    }
+
+    private boolean isOnPath(int currency) {
+        return (onPath[currency >>> 6] & (1L << currency)) != 0;
+    }
+
+    private void setOnPath(int currency) {
+        onPath[currency >>> 6] |= 1L << currency;
+    }
+
+    private void clearOnPath(int currency) {
+        onPath[currency >>> 6] &= ~(1L << currency);
+    }
+}
@@ -1,6 +1,8 @@
 //Author: Tushar Jaiswal
 //Creation Date: 01/10/2021
 
+package currencyconversion;
+
 public class Conversion {
     String currencyA;
     String currencyB;
@@ -0,0 +1,237 @@
+//Author: Tushar Jaiswal
+//Creation Date: 01/10/2021
+
+/*The currency graph is copy-on-write: onQuote builds a new map sharing every adjacency list but the two it changes,
+and publishes it through a volatile field. A query reads the field once and traverses that snapshot, so it never
+blocks and always sees the graph as of a single quote. Each edge remembers the product it came from, so when both A-B
+and B-A are listed a quote of one never overwrites the edges of the other.
+
+Runtime Complexity:
+  * createCurrencyGraph is O(|Conversions|)
+  * getConversionRate is O(|Vertices| * |Edges|) as each neighbor of the Currency to be converted can start the traversal of the entire graph
+  * onQuote is O(|Vertices|) to copy the map, plus the degrees of both currencies
+Space Complexity: O(|Vertices| + |Edges|) of the currency graph, plus O(|Vertices|) per snapshot still being queried*/
+
+package currencyconversion;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class CurrencyConversion {
+    volatile HashMap<String, List<Edge>> currencyGraph;
+
+    /**
+     * The rate to the currency in key, from the product currencyA-currencyB it was quoted on.
+     */
+    static final class Edge extends Pair<String, Double> {
+        final String product;
+
+        Edge(String currency, double rate, String product) {
+            super(currency, rate);
+            this.product = product;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<Conversion> conversions = new ArrayList<>();
+        conversions.add(new Conversion("ETH", "USD", 5, 6));
+        conversions.add(new Conversion("ETH", "BTC", 2, 3));
+        conversions.add(new Conversion("BTC", "USD", 3, 4));
+        CurrencyConversion currencyConversion = new CurrencyConversion(conversions);
+        String from = "ETH";
+        String to = "USD";
+        double amount = currencyConversion.getConversionRate(from, to);
+        System.out.println(String.format("1.0 %s = %s %s", from, amount, to));
+
+        conversions.add(new Conversion("A", "B", 2, 3));
+        conversions.add(new Conversion("A", "C", 5, 6));
+        conversions.add(new Conversion("B", "C", 3, 4));
+        conversions.add(new Conversion("C", "D", 2, 3));
+        currencyConversion = new CurrencyConversion(conversions);
+        from = "A";
+        to = "D";
+        amount = currencyConversion.getConversionRate(from, to);
+        System.out.println(String.format("1.0 %s = %s %s", from, amount, to));
+
+        amount = currencyConversion.getConversionRate("USD", "ETH");
+        System.out.println(String.format("1.0 %s = %s %s", "USD", amount, "ETH"));
+
+        testQuoteReplay();
+    }
+
+    /**
+     * Replays quotes of ETH-BTC while readers convert ETH to USD, which is max(5, 3 * bid of ETH-BTC).
+     */
+    private static void testQuoteReplay() throws IOException, InterruptedException {
+        List<Conversion> conversions = new ArrayList<>();
+        conversions.add(new Conversion("ETH", "USD", 5, 6));
+        conversions.add(new Conversion("ETH", "BTC", 2, 3));
+        conversions.add(new Conversion("BTC", "USD", 3, 4));
+        CurrencyConversion currencyConversion = new CurrencyConversion(conversions);
+
+        double[] bids = { 2.5, 1, 2 };
+        List<String> lines = new ArrayList<>();
+        lines.add("# timestampMillis,product,bid,ask");
+        for (int i = 0; i < 30_000; i++) {
+            lines.add(String.format("%d,ETH-BTC,%s,3", i, bids[i % bids.length]));
+        }
+        Path file = Files.createTempFile("quotes", ".csv");
+        Files.write(file, lines, StandardCharsets.UTF_8);
+
+        AtomicBoolean replaying = new AtomicBoolean(true);
+        List<Throwable> failures = new ArrayList<>();
+        Thread[] readers = new Thread[2];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                try {
+                    while (replaying.get()) {
+                        double rate = currencyConversion.getConversionRate("ETH", "USD");
+                        assert rate == 7.5 || rate == 5 || rate == 6 : rate;
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        try {
+            currencyConversion.subscribe(new ReplayQuoteSource(file));
+        } finally {
+            replaying.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            Files.delete(file);
+        }
+        assert failures.isEmpty() : failures;
+        // The last quote restored the bid of 2
+        assert currencyConversion.getConversionRate("ETH", "USD") == 6;
+
+        // A quote of a new product adds its currencies
+        currencyConversion.onQuote(new Conversion("SOL", "BTC", 0.5, 0.6));
+        assert currencyConversion.getConversionRate("SOL", "USD") == 1.5;
+        assert currencyConversion.currencyGraph.get("ETH").size() == 2;
+
+        // Quotes of BTC-ETH, listed besides ETH-BTC, only change the edges of BTC-ETH
+        currencyConversion.onQuote(new Conversion("BTC", "ETH", 0.25, 0.4));
+        assert currencyConversion.currencyGraph.get("ETH").size() == 3;
+        assert currencyConversion.getConversionRate("ETH", "BTC") == 2.5;
+        currencyConversion.onQuote(new Conversion("BTC", "ETH", 0.25, 1));
+        assert currencyConversion.currencyGraph.get("ETH").size() == 3;
+        assert currencyConversion.getConversionRate("ETH", "BTC") == 2;
+        currencyConversion.onQuote(new Conversion("ETH", "BTC", 1.5, 3));
+        assert currencyConversion.getConversionRate("ETH", "BTC") == 1.5;
+        System.out.println("All tests passed.");
+    }
+
+    public CurrencyConversion(List<Conversion> conversions) {
+        currencyGraph = createCurrencyGraph(conversions);
+    }
+
+    HashMap<String, List<Edge>> createCurrencyGraph(List<Conversion> conversions) {
+        HashMap<String, List<Edge>> currencyGraph = new HashMap<>();
+
+        for (Conversion conversion : conversions) {
+            if (!currencyGraph.containsKey(conversion.currencyA)) {
+                currencyGraph.put(conversion.currencyA, new ArrayList<>());
+            }
+            if (!currencyGraph.containsKey(conversion.currencyB)) {
+                currencyGraph.put(conversion.currencyB, new ArrayList<>());
+            }
+            String product = productOf(conversion);
+            currencyGraph.get(conversion.currencyA).add(new Edge(conversion.currencyB, conversion.bid, product));
+            currencyGraph.get(conversion.currencyB).add(new Edge(conversion.currencyA, 1/conversion.ask, product));
+        }
+
+        return currencyGraph;
+    }
+
+    /**
+     * Replaces the bid and ask of the conversion between currencyA and currencyB, adding it if it is new.
+     */
+    public synchronized void onQuote(Conversion conversion) {
+        HashMap<String, List<Edge>> currencyGraph = new HashMap<>(this.currencyGraph);
+        String product = productOf(conversion);
+        currencyGraph.put(conversion.currencyA, withRate(currencyGraph.get(conversion.currencyA), conversion.currencyB, conversion.bid, product));
+        currencyGraph.put(conversion.currencyB, withRate(currencyGraph.get(conversion.currencyB), conversion.currencyA, 1/conversion.ask, product));
+        this.currencyGraph = currencyGraph;
+    }
+
+    /**
+     * Applies every quote of source, on the calling thread, until the source is exhausted.
+     */
+    public void subscribe(QuoteSource source) throws IOException {
+        source.feed(this::onQuote);
+    }
+
+    private static String productOf(Conversion conversion) {
+        return conversion.currencyA + "-" + conversion.currencyB;
+    }
+
+    /**
+     * Returns a copy of neighbors with the rate to currency quoted on product replaced, or added if there was none.
+     */
+    private static List<Edge> withRate(List<Edge> neighbors, String currency, double rate, String product) {
+        List<Edge> updated = neighbors == null ? new ArrayList<>() : new ArrayList<>(neighbors);
+        for (int i = 0; i < updated.size(); i++) {
+            if (updated.get(i).key.equals(currency) && updated.get(i).product.equals(product)) {
+                updated.set(i, new Edge(currency, rate, product));
+                return updated;
+            }
+        }
+        updated.add(new Edge(currency, rate, product));
+        return updated;
+    }
+
+    double getConversionRate(String fromCurrency, String toCurrency) {
+        if (fromCurrency.equals(toCurrency)) {
+            return 1.0;
+        }
+
+        // Every step of this query traverses the same snapshot, even if quotes arrive meanwhile
+        HashMap<String, List<Edge>> currencyGraph = this.currencyGraph;
+        double bestRate = -1.0;
+        HashSet<String> visitedNodes = new HashSet<>();
+        visitedNodes.add(fromCurrency);
+
+        for (Pair<String, Double> neighbor : currencyGraph.get(fromCurrency)) {
+            double rate = dfsTraversal(currencyGraph, toCurrency, neighbor.key, neighbor.value, visitedNodes);
+            bestRate = Math.max(rate, bestRate);
+        }
+
+        if (bestRate == -1) {
+            throw new IllegalArgumentException(String.format("There is no conversion from %s to %s.", fromCurrency, toCurrency));
+        }
+
+        return bestRate;
+    }
+
+    private double dfsTraversal(HashMap<String, List<Edge>> currencyGraph, String targetNode, String currNode, double amount, HashSet<String> visitedNodes) {
+        if (currNode.equals(targetNode)) {
+            return amount;
+        }
+
+        double maxAmount = -1;
+
+        for (Pair<String, Double> neighbor : currencyGraph.get(currNode)) {
+            if (!visitedNodes.contains(neighbor.key)) {
+                visitedNodes.add(currNode);
+                double currAmount = dfsTraversal(currencyGraph, targetNode, neighbor.key, amount * neighbor.value, visitedNodes);
+                visitedNodes.remove(currNode);
+
+                maxAmount = Math.max(maxAmount, currAmount);
+            }
+        }
+
+        return maxAmount;
+    }
+}
@@ -0,0 +1,496 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Precomputed best conversion rates between every pair of currencies, for services asking for rates far more often
+than the quotes change. Currencies are interned to ints and the best rates kept in a flat double[] matrix, where
+bestRates[i * stride + j] is the best rate from currency i to currency j (0 if there is no conversion).
+The matrix is the max-product closure of the quotes, computed once by Floyd-Warshall.
+
+A quote update changes the rates of two edges, currencyA -> currencyB (bid) and currencyB -> currencyA (1 / ask):
+  * A rate which got better can only create routes through its edge u -> v, so every best rate i -> j becomes
+    max(bestRates[i][j], bestRates[i][u] * rate * bestRates[v][j])
+  * A rate which got worse can only hurt the sources whose best rates went through its edge. Their rows are
+    recomputed by Bellman-Ford over a CSR adjacency of the edges, and the other rows are left as they are.
+Routes with arbitrage have no best rate, so a quote creating a profitable cycle is rejected and rolled back.
+
+Runtime Complexity:
+  * CurrencyRateMatrix is O(|Conversions| + |Vertices|^3)
+  * getConversionRate is O(1)
+  * update is O(|Vertices|^2) for better rates, plus O(|Vertices| * |Edges|) per affected source for worse rates
+Space Complexity: O(|Vertices|^2 + |Edges|)*/
+
+package currencyconversion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class CurrencyRateMatrix {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Relative tolerance on rates, so rounding errors on cycles of rate 1 are not mistaken for arbitrage.
+     */
+    private static final double EPSILON = 1e-12;
+
+    private final HashMap<String, Integer> currencyIds = new HashMap<>();
+    private String[] currencies = new String[INITIAL_CAPACITY];
+    private int currencyCount;
+
+    // Conversion k is keyed by its product id currencyA-currencyB and owns edges 2k (bid) and 2k + 1 (1 / ask)
+    private final HashMap<String, Integer> conversionIds = new HashMap<>();
+    private int[] edgeFrom = new int[INITIAL_CAPACITY];
+    private int[] edgeTo = new int[INITIAL_CAPACITY];
+    private double[] edgeRate = new double[INITIAL_CAPACITY];
+    private int edgeCount;
+
+    // CSR adjacency, the edges leaving currency c are adjacentEdges[adjacencyStart[c] .. adjacencyStart[c + 1])
+    private int[] adjacencyStart = new int[1];
+    private int[] adjacentEdges = new int[0];
+    private boolean adjacencyStale;
+
+    private double[] bestRates;
+    private int stride;
+
+    // Scratch space of update, sources are marked by stamping them with the current epoch
+    private int[] affectedSources = new int[INITIAL_CAPACITY];
+    private double[] savedRows = new double[0];
+    private int[] frontier = new int[INITIAL_CAPACITY];
+    private int[] nextFrontier = new int[INITIAL_CAPACITY];
+    private int[] stamp = new int[INITIAL_CAPACITY];
+    private int epoch;
+
+    public static void main(String[] args) {
+        List<Conversion> conversions = new ArrayList<>();
+        conversions.add(new Conversion("ETH", "USD", 5, 6));
+        conversions.add(new Conversion("ETH", "BTC", 2, 3));
+        conversions.add(new Conversion("BTC", "USD", 3, 4));
+        CurrencyRateMatrix matrix = new CurrencyRateMatrix(conversions);
+        double amount = matrix.getConversionRate("ETH", "USD");
+        System.out.println(String.format("1.0 %s = %s %s", "ETH", amount, "USD"));
+        assert amount == 6.0;
+        assert Math.abs(matrix.getConversionRate("USD", "ETH") - 1.0 / 6) < 1e-12;
+        assert matrix.getConversionRate("BTC", "BTC") == 1.0;
+
+        // A worse rate on the best route falls back to the next best route
+        matrix.update(new Conversion("ETH", "BTC", 1, 3));
+        assert matrix.getConversionRate("ETH", "USD") == 5.0;
+        assert matrix.getConversionRate("ETH", "BTC") == 5.0 / 4;
+        matrix.update(new Conversion("ETH", "BTC", 2, 3));
+        assert matrix.getConversionRate("ETH", "USD") == 6.0;
+
+        // New products and currencies are added by updates
+        try {
+            matrix.getConversionRate("ETH", "SOL");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Unknown currency SOL.");
+        }
+        matrix.update(new Conversion("SOL", "BTC", 0.5, 0.6));
+        assert Math.abs(matrix.getConversionRate("ETH", "SOL") - 2 / 0.6) < 1e-12;
+        matrix.update(new Conversion("DOGE", "XRP", 0.5, 0.6));
+        try {
+            matrix.getConversionRate("ETH", "DOGE");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("There is no conversion from ETH to DOGE.");
+        }
+
+        // Buying ETH at 5.5 USD while ETH converts to 6 USD through BTC is an arbitrage, so the quote is rejected
+        try {
+            matrix.update(new Conversion("ETH", "USD", 5, 5.5));
+            assert false;
+        } catch (IllegalStateException e) {
+            assert e.getMessage().equals("Quote ETH-USD would create an arbitrage cycle.");
+        }
+        try {
+            matrix.update(new Conversion("ETH", "BTC", 2.5, 2.6));
+            assert false;
+        } catch (IllegalStateException e) {
+            assert e.getMessage().equals("Quote ETH-BTC would create an arbitrage cycle.");
+        }
+        assert matrix.getConversionRate("ETH", "USD") == 6.0;
+        assert matrix.getConversionRate("USD", "ETH") == 1.0 / 6;
+
+        // Random requotes of a market priced from one price per currency, checked against a rebuild and CurrencyRouter
+        Random random = new Random(42);
+        int currencyCount = 60;
+        Conversion[] market = createMarket(currencyCount, 90, random);
+        matrix = new CurrencyRateMatrix(Arrays.asList(market));
+        for (int round = 0; round < 2000; round++) {
+            int product = random.nextInt(market.length);
+            market[product] = requote(market[product], random);
+            matrix.update(market[product]);
+            if (round % 100 == 0) {
+                CurrencyRateMatrix rebuilt = new CurrencyRateMatrix(Arrays.asList(market));
+                CurrencyRouter router = new CurrencyRouter(Arrays.asList(market));
+                for (int i = 0; i < currencyCount; i++) {
+                    for (int j = 0; j < currencyCount; j++) {
+                        double rate = matrix.getConversionRate("C" + i, "C" + j);
+                        assert Math.abs(rate / rebuilt.getConversionRate("C" + i, "C" + j) - 1) < 1e-9;
+                        assert Math.abs(rate / router.getBestRoute("C" + i, "C" + j).rate - 1) < 1e-9;
+                    }
+                }
+            }
+        }
+
+        currencyCount = 500;
+        market = createMarket(currencyCount, 600, random);
+        long start = System.nanoTime();
+        matrix = new CurrencyRateMatrix(Arrays.asList(market));
+        long buildNanos = System.nanoTime() - start;
+        int updates = 200;
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            int product = random.nextInt(market.length);
+            market[product] = requote(market[product], random);
+            matrix.update(market[product]);
+        }
+        long updateNanos = System.nanoTime() - start;
+        int lookups = 10_000_000;
+        double checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            checksum += matrix.getConversionRate(matrix.currencies[i % currencyCount], matrix.currencies[(i * 7) % currencyCount]);
+        }
+        long lookupNanos = System.nanoTime() - start;
+        assert checksum > 0;
+        System.out.println(String.format("%d currencies: build %d ms, update %d us, lookup %d ns", currencyCount,
+                buildNanos / 1_000_000, updateNanos / updates / 1_000, lookupNanos / lookups));
+
+        System.out.println("All tests passed.");
+    }
+
+    /**
+     * Quotes priced from one price per currency, with a spread, so the market has no arbitrage.
+     */
+    private static Conversion[] createMarket(int currencyCount, int productCount, Random random) {
+        double[] prices = new double[currencyCount];
+        for (int i = 0; i < currencyCount; i++) {
+            prices[i] = Math.exp(random.nextGaussian() * 3);
+        }
+        Conversion[] market = new Conversion[productCount];
+        HashSet<String> productIds = new HashSet<>();
+        for (int i = 0; i < productCount; i++) {
+            // The first products connect every currency, the others are random distinct pairs
+            int a = i + 1;
+            int b = random.nextInt(i + 1);
+            while (a >= currencyCount || a == b || productIds.contains("C" + a + "-C" + b)) {
+                a = random.nextInt(currencyCount);
+                b = random.nextInt(currencyCount);
+            }
+            productIds.add("C" + a + "-C" + b);
+            double mid = prices[a] / prices[b];
+            market[i] = requote(new Conversion("C" + a, "C" + b, mid, mid), random);
+        }
+        return market;
+    }
+
+    private static Conversion requote(Conversion conversion, Random random) {
+        double mid = Math.sqrt(conversion.bid * conversion.ask);
+        double spread = 1 + 0.001 + random.nextDouble() * 0.01;
+        return new Conversion(conversion.currencyA, conversion.currencyB, mid / spread, mid * spread);
+    }
+
+    public CurrencyRateMatrix(List<Conversion> conversions) {
+        for (Conversion conversion : conversions) {
+            validate(conversion);
+            int id = internConversion(conversion);
+            edgeRate[2 * id] = conversion.bid;
+            edgeRate[2 * id + 1] = 1 / conversion.ask;
+        }
+
+        stride = Math.max(INITIAL_CAPACITY, currencyCount);
+        bestRates = new double[stride * stride];
+        for (int i = 0; i < currencyCount; i++) {
+            bestRates[i * stride + i] = 1.0;
+        }
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int index = edgeFrom[edge] * stride + edgeTo[edge];
+            bestRates[index] = Math.max(bestRates[index], edgeRate[edge]);
+        }
+        for (int k = 0; k < currencyCount; k++) {
+            for (int i = 0; i < currencyCount; i++) {
+                double toK = bestRates[i * stride + k];
+                if (toK == 0) {
+                    continue;
+                }
+                for (int j = 0; j < currencyCount; j++) {
+                    double candidate = toK * bestRates[k * stride + j];
+                    if (candidate > bestRates[i * stride + j]) {
+                        bestRates[i * stride + j] = candidate;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < currencyCount; i++) {
+            if (bestRates[i * stride + i] > 1 + EPSILON) {
+                throw new IllegalStateException(String.format("Conversions of %s have an arbitrage cycle.", currencies[i]));
+            }
+        }
+    }
+
+    public double getConversionRate(String fromCurrency, String toCurrency) {
+        double rate = bestRates[idOf(fromCurrency) * stride + idOf(toCurrency)];
+        if (rate == 0) {
+            throw new IllegalArgumentException(String.format("There is no conversion from %s to %s.", fromCurrency, toCurrency));
+        }
+        return rate;
+    }
+
+    /**
+     * Replaces the bid and ask of the conversion between currencyA and currencyB, adding it if it is new.
+     * Throws an IllegalStateException, leaving every rate unchanged, if the quote would create an arbitrage cycle.
+     */
+    public void update(Conversion conversion) {
+        validate(conversion);
+        int id = internConversion(conversion);
+        int forward = 2 * id;
+        int backward = forward + 1;
+        double oldForwardRate = edgeRate[forward];
+        double oldBackwardRate = edgeRate[backward];
+        double forwardRate = conversion.bid;
+        double backwardRate = 1 / conversion.ask;
+        ensureScratchCapacity();
+
+        // Worse rates first, so the better ones are checked for arbitrage against the final matrix
+        int affectedCount = 0;
+        int mark = nextEpoch();
+        if (forwardRate < oldForwardRate) {
+            affectedCount = collectAffectedSources(forward, oldForwardRate, mark, affectedCount);
+        }
+        if (backwardRate < oldBackwardRate) {
+            affectedCount = collectAffectedSources(backward, oldBackwardRate, mark, affectedCount);
+        }
+        edgeRate[forward] = Math.min(forwardRate, oldForwardRate);
+        edgeRate[backward] = Math.min(backwardRate, oldBackwardRate);
+        for (int i = 0; i < affectedCount; i++) {
+            int source = affectedSources[i];
+            if (savedRows.length < (i + 1) * currencyCount) {
+                savedRows = Arrays.copyOf(savedRows, Math.max((i + 1) * currencyCount, savedRows.length * 2));
+            }
+            System.arraycopy(bestRates, source * stride, savedRows, i * currencyCount, currencyCount);
+            recalculateRow(source);
+        }
+
+        boolean arbitrage = (forwardRate > oldForwardRate && createsArbitrage(forward, forwardRate))
+                || (backwardRate > oldBackwardRate && createsArbitrage(backward, backwardRate));
+        if (arbitrage) {
+            edgeRate[forward] = oldForwardRate;
+            edgeRate[backward] = oldBackwardRate;
+            for (int i = 0; i < affectedCount; i++) {
+                System.arraycopy(savedRows, i * currencyCount, bestRates, affectedSources[i] * stride, currencyCount);
+            }
+            throw new IllegalStateException(String.format("Quote %s-%s would create an arbitrage cycle.",
+                    conversion.currencyA, conversion.currencyB));
+        }
+
+        if (forwardRate > oldForwardRate) {
+            edgeRate[forward] = forwardRate;
+            improveThroughEdge(forward);
+        }
+        if (backwardRate > oldBackwardRate) {
+            edgeRate[backward] = backwardRate;
+            improveThroughEdge(backward);
+        }
+    }
+
+    private void validate(Conversion conversion) {
+        if (!(conversion.bid > 0) || !(conversion.ask > 0)) {
+            throw new IllegalArgumentException(String.format("Conversion %s-%s must have a positive bid and ask.",
+                    conversion.currencyA, conversion.currencyB));
+        }
+        // Selling above the price of buying back is an arbitrage cycle on its own
+        if (conversion.bid > conversion.ask) {
+            throw new IllegalStateException(String.format("Quote %s-%s would create an arbitrage cycle.",
+                    conversion.currencyA, conversion.currencyB));
+        }
+    }
+
+    /**
+     * Stamps with mark and appends to affectedSources the sources with a best rate which may go through edge.
+     */
+    private int collectAffectedSources(int edge, double oldRate, int mark, int affectedCount) {
+        int u = edgeFrom[edge];
+        int v = edgeTo[edge];
+        for (int i = 0; i < currencyCount; i++) {
+            double throughEdge = bestRates[i * stride + u] * oldRate;
+            if (throughEdge == 0 || stamp[i] == mark) {
+                continue;
+            }
+            for (int j = 0; j < currencyCount; j++) {
+                if (throughEdge * bestRates[v * stride + j] >= bestRates[i * stride + j] * (1 - EPSILON)
+                        && bestRates[v * stride + j] > 0) {
+                    stamp[i] = mark;
+                    affectedSources[affectedCount++] = i;
+                    break;
+                }
+            }
+        }
+        return affectedCount;
+    }
+
+    /**
+     * Bellman-Ford from source over the current edge rates, which have no arbitrage.
+     */
+    private void recalculateRow(int source) {
+        if (adjacencyStale) {
+            buildAdjacency();
+            adjacencyStale = false;
+        }
+        int row = source * stride;
+        Arrays.fill(bestRates, row, row + currencyCount, 0);
+        bestRates[row + source] = 1.0;
+        frontier[0] = source;
+        int frontierSize = 1;
+        while (frontierSize > 0) {
+            int mark = nextEpoch();
+            int nextFrontierSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int currency = frontier[i];
+                for (int j = adjacencyStart[currency]; j < adjacencyStart[currency + 1]; j++) {
+                    int edge = adjacentEdges[j];
+                    int next = edgeTo[edge];
+                    double candidate = bestRates[row + currency] * edgeRate[edge];
+                    if (candidate > bestRates[row + next] * (1 + EPSILON)) {
+                        bestRates[row + next] = candidate;
+                        if (stamp[next] != mark) {
+                            stamp[next] = mark;
+                            nextFrontier[nextFrontierSize++] = next;
+                        }
+                    }
+                }
+            }
+            int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierSize = nextFrontierSize;
+        }
+    }
+
+    private boolean createsArbitrage(int edge, double rate) {
+        return bestRates[edgeTo[edge] * stride + edgeFrom[edge]] * rate > 1 + EPSILON;
+    }
+
+    private void improveThroughEdge(int edge) {
+        int u = edgeFrom[edge];
+        int v = edgeTo[edge];
+        double rate = edgeRate[edge];
+        for (int i = 0; i < currencyCount; i++) {
+            double throughEdge = bestRates[i * stride + u] * rate;
+            if (throughEdge == 0) {
+                continue;
+            }
+            for (int j = 0; j < currencyCount; j++) {
+                double candidate = throughEdge * bestRates[v * stride + j];
+                if (candidate > bestRates[i * stride + j]) {
+                    bestRates[i * stride + j] = candidate;
+                }
+            }
+        }
+    }
+
+    private int idOf(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format("Unknown currency %s.", currency));
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of the conversion, adding it with rates of 0 (no conversion) if it is new.
+     */
+    private int internConversion(Conversion conversion) {
+        String productId = conversion.currencyA + "-" + conversion.currencyB;
+        Integer id = conversionIds.get(productId);
+        if (id != null) {
+            return id;
+        }
+        int currencyA = internCurrency(conversion.currencyA);
+        int currencyB = internCurrency(conversion.currencyB);
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeRate = Arrays.copyOf(edgeRate, capacity);
+        }
+        edgeFrom[edgeCount] = currencyA;
+        edgeTo[edgeCount] = currencyB;
+        edgeFrom[edgeCount + 1] = currencyB;
+        edgeTo[edgeCount + 1] = currencyA;
+        edgeCount += 2;
+        adjacencyStale = true;
+        conversionIds.put(productId, edgeCount / 2 - 1);
+        return edgeCount / 2 - 1;
+    }
+
+    private int internCurrency(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id != null) {
+            return id;
+        }
+        if (currencyCount == currencies.length) {
+            currencies = Arrays.copyOf(currencies, currencyCount * 2);
+        }
+        // The matrix only exists once the constructor has added the initial conversions
+        if (bestRates != null) {
+            if (currencyCount == stride) {
+                growMatrix(stride * 2);
+            }
+            bestRates[currencyCount * stride + currencyCount] = 1.0;
+        }
+        currencies[currencyCount] = currency;
+        currencyIds.put(currency, currencyCount);
+        return currencyCount++;
+    }
+
+    private void growMatrix(int capacity) {
+        double[] grown = new double[capacity * capacity];
+        for (int i = 0; i < currencyCount; i++) {
+            System.arraycopy(bestRates, i * stride, grown, i * capacity, currencyCount);
+        }
+        bestRates = grown;
+        stride = capacity;
+    }
+
+    private void ensureScratchCapacity() {
+        if (stamp.length < currencyCount) {
+            int capacity = Math.max(currencyCount, stamp.length * 2);
+            affectedSources = new int[capacity];
+            frontier = new int[capacity];
+            nextFrontier = new int[capacity];
+            stamp = new int[capacity];
+            epoch = 0;
+        }
+    }
+
+    /**
+     * Counting sort of the edges by the currency they leave.
+     */
+    private void buildAdjacency() {
+        adjacencyStart = new int[currencyCount + 1];
+        adjacentEdges = new int[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            adjacencyStart[edgeFrom[edge] + 1]++;
+        }
+        for (int currency = 0; currency < currencyCount; currency++) {
+            adjacencyStart[currency + 1] += adjacencyStart[currency];
+        }
+        int[] next = Arrays.copyOf(adjacencyStart, currencyCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            adjacentEdges[next[edgeFrom[edge]]++] = edge;
+        }
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+}
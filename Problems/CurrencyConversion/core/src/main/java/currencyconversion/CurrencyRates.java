@@ -0,0 +1,59 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+package currencyconversion;
+
+import java.util.HashMap;
+
+/**
+ * Best rates between one currency and every currency of a CurrencyRouter, in a double array indexed by the interned
+ * ids of the currencies. A currency without a conversion has a rate of 0, and a currency whose rate a profitable
+ * cycle makes unbounded a rate of infinity.
+ */
+public class CurrencyRates {
+    // Shared with the router, which may have interned currencies added after these rates
+    private final HashMap<String, Integer> currencyIds;
+    private final String[] currencies;
+    private final double[] rates;
+
+    CurrencyRates(HashMap<String, Integer> currencyIds, String[] currencies, double[] rates) {
+        this.currencyIds = currencyIds;
+        this.currencies = currencies;
+        this.rates = rates;
+    }
+
+    /**
+     * Number of currencies, whose ids are 0 .. size() - 1.
+     */
+    public int size() {
+        return rates.length;
+    }
+
+    /**
+     * Returns true if currency was known to the router when these rates were computed.
+     */
+    public boolean contains(String currency) {
+        Integer id = currencyIds.get(currency);
+        return id != null && id < rates.length;
+    }
+
+    public int idOf(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id == null || id >= rates.length) {
+            throw new IllegalArgumentException(String.format("Unknown currency %s.", currency));
+        }
+        return id;
+    }
+
+    public String currencyOf(int id) {
+        return currencies[id];
+    }
+
+    public double getRate(int id) {
+        return rates[id];
+    }
+
+    public double getRate(String currency) {
+        return rates[idOf(currency)];
+    }
+}
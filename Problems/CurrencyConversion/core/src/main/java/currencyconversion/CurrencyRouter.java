@@ -0,0 +1,756 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Best rate routing over the same currency graph as CurrencyConversion, without enumerating every simple path.
+Converting along a route multiplies its rates, so with edge weights of -log(rate) the best rate is the shortest path.
+Currencies are interned to ints and the edges kept in int and double arrays, with a CSR adjacency of the edges
+leaving each currency. Shortest paths are computed by Bellman-Ford, relaxing in every round only the edges
+leaving the currencies improved in the previous round.
+A profitable cycle (arbitrage) is a negative cycle, which Bellman-Ford detects when the n-th round still improves a
+currency. The best rate to a currency reachable from such a cycle is unbounded, so getBestRoute throws instead of
+hanging. With a hop limit the best rate is always bounded and the route may go around a profitable cycle.
+findArbitrageCycles runs the same detection from every currency at once (distances all starting at 0), one
+connected component at a time. Components are tracked by union-find as conversions are added, and their cycles are
+cached until a quote of the component changes, so after an update only that component is checked again.
+getConversionRatesTo runs Bellman-Ford backwards from the target, over the edges entering each currency, which are
+the reverses of the edges leaving it.
+
+Runtime Complexity:
+  * CurrencyRouter is O(|Conversions|)
+  * getBestRoute is O(|Vertices| * |Edges|) in the worst case, and O(d * |Edges|) when the best routes have at most d hops
+  * getBestRoute with a hop limit k is O(k * (|Vertices| + |Edges|))
+  * getConversionRates and getConversionRatesTo are the same as getBestRoute, for every currency at once
+  * update is O(1) amortized for a known product, and O(|Edges|) to add a product when queried next
+  * findArbitrageCycles is O(|Vertices|) plus O(|V_c| * |E_c|) for every component c changed since the last call
+Space Complexity: O(|Vertices| + |Edges|), plus O(k * |Vertices|) for a hop limit k*/
+
+package currencyconversion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class CurrencyRouter {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Tolerance on -log(rate) distances, so rounding errors on cycles of rate 1 are not mistaken for arbitrage.
+     */
+    private static final double EPSILON = 1e-12;
+
+    private final HashMap<String, Integer> currencyIds = new HashMap<>();
+    private String[] currencies = new String[INITIAL_CAPACITY];
+    private int currencyCount;
+
+    // Conversion k is keyed by its product id currencyA-currencyB and owns edges 2k (bid) and 2k + 1 (1 / ask)
+    private final HashMap<String, Integer> conversionIds = new HashMap<>();
+    private int[] edgeFrom = new int[INITIAL_CAPACITY];
+    private int[] edgeTo = new int[INITIAL_CAPACITY];
+    private double[] edgeRate = new double[INITIAL_CAPACITY];
+    private double[] edgeWeight = new double[INITIAL_CAPACITY];
+    private int edgeCount;
+
+    // CSR adjacency, the edges leaving currency c are adjacentEdges[adjacencyStart[c] .. adjacencyStart[c + 1])
+    private int[] adjacencyStart = new int[1];
+    private int[] adjacentEdges = new int[0];
+    private boolean adjacencyStale;
+
+    // Union-find of the connected components, with the arbitrage cycles of each root (null until checked)
+    private int[] componentParent = new int[INITIAL_CAPACITY];
+    private final List<List<Route>> componentCycles = new ArrayList<>();
+
+    // Scratch space reused by every query, currencies are marked by stamping them with the current epoch
+    private double[] distance = new double[0];
+    private double[] previousDistance = new double[0];
+    private int[] parentEdge = new int[0];
+    private int[] roundParentEdge = new int[0];
+    private int[] frontier = new int[0];
+    private int[] nextFrontier = new int[0];
+    private int[] stamp = new int[0];
+    private int epoch;
+
+    public static void main(String[] args) {
+        List<Conversion> conversions = new ArrayList<>();
+        conversions.add(new Conversion("ETH", "USD", 5, 6));
+        conversions.add(new Conversion("ETH", "BTC", 2, 3));
+        conversions.add(new Conversion("BTC", "USD", 3, 4));
+        CurrencyRouter router = new CurrencyRouter(conversions);
+        Route route = router.getBestRoute("ETH", "USD");
+        System.out.println(String.format("1.0 %s = %s %s via %s", "ETH", route.rate, "USD", route));
+        assert route.rate == 6.0;
+        assert route.currencies.equals(Arrays.asList("ETH", "BTC", "USD"));
+        assert router.getBestRoute("ETH", "USD", 1).rate == 5.0;
+        assert router.getBestRoute("ETH", "USD", 2).rate == 6.0;
+        assert Math.abs(router.getBestRoute("USD", "ETH").rate - 1.0 / 6) < 1e-12;
+        assert router.getBestRoute("BTC", "BTC").currencies.equals(Collections.singletonList("BTC"));
+
+        conversions.add(new Conversion("A", "B", 2, 3));
+        conversions.add(new Conversion("A", "C", 5, 6));
+        conversions.add(new Conversion("B", "C", 3, 4));
+        conversions.add(new Conversion("C", "D", 2, 3));
+        router = new CurrencyRouter(conversions);
+        route = router.getBestRoute("A", "D");
+        assert route.rate == 12.0;
+        assert route.currencies.equals(Arrays.asList("A", "B", "C", "D"));
+        assert router.getBestRoute("A", "D", 2).rate == 10.0;
+        try {
+            router.getBestRoute("A", "ETH");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("There is no conversion from A to ETH.");
+        }
+        try {
+            router.getBestRoute("A", "XYZ");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Unknown currency XYZ.");
+        }
+
+        // Selling X for Y at 2 and buying X back at 0.25 Y turns 1 X into 8 X
+        conversions.add(new Conversion("X", "Y", 2, 0.25));
+        conversions.add(new Conversion("Y", "Z", 3, 4));
+        router = new CurrencyRouter(conversions);
+        try {
+            router.getBestRoute("X", "Z");
+            assert false;
+        } catch (IllegalStateException e) {
+            assert e.getMessage().startsWith("Arbitrage cycle ");
+        }
+        // With hops to spare for going around the cycle, a hop limited route is unbounded too, and found so in n rounds
+        List<Conversion> cycling = new ArrayList<>();
+        cycling.add(new Conversion("ETH", "USD", 5, 6));
+        cycling.add(new Conversion("ETH", "BTC", 3, 3.1));
+        cycling.add(new Conversion("BTC", "USD", 3, 4));
+        cycling.add(new Conversion("SOL", "USD", 1, 2));
+        CurrencyRouter cyclingRouter = new CurrencyRouter(cycling);
+        for (int maxHops : new int[] { 5, 1_000_000, Integer.MAX_VALUE }) {
+            try {
+                cyclingRouter.getBestRoute("ETH", "SOL", maxHops);
+                assert false;
+            } catch (IllegalStateException e) {
+                assert e.getMessage().startsWith("Arbitrage cycle ");
+            }
+        }
+        // Up to n hops the route is still finite
+        assert cyclingRouter.getBestRoute("ETH", "SOL", 2).currencies.size() == 3;
+        assert cyclingRouter.getBestRoute("ETH", "SOL", 4).rate < Double.POSITIVE_INFINITY;
+
+        // Currencies which cannot be reached from the cycle are not affected by it
+        assert router.getBestRoute("A", "D").rate == 12.0;
+        CurrencyRates rates = router.getConversionRates("X");
+        assert rates.getRate("Z") == Double.POSITIVE_INFINITY && rates.getRate("X") == Double.POSITIVE_INFINITY;
+        assert rates.getRate("A") == 0;
+        rates = router.getConversionRatesTo("D");
+        assert Math.abs(rates.getRate("A") - 12) < 1e-12 && rates.getRate("D") == 1 && rates.getRate("Y") == 0;
+        assert rates.currencyOf(rates.idOf("B")).equals("B") && rates.size() == 10;
+        assert router.getConversionRatesTo("Z").getRate("Y") == Double.POSITIVE_INFINITY;
+        route = router.getBestRoute("X", "Z", 4);
+        assert route.currencies.equals(Arrays.asList("X", "Y", "X", "Y", "Z"));
+        assert route.rate == 2 * 4 * 2 * 3;
+        List<Route> cycles = router.findArbitrageCycles();
+        assert cycles.size() == 1;
+        assert cycles.get(0).rate == 8.0;
+        assert cycles.get(0).currencies.size() == 3;
+        assert cycles.get(0).currencies.get(0).equals(cycles.get(0).currencies.get(2));
+        router.update(new Conversion("X", "Y", 2, 2.5));
+        assert router.findArbitrageCycles().isEmpty();
+        assert router.getBestRoute("X", "Z").rate == 6.0;
+
+        // Markets priced consistently from one price per currency, with a spread, have no arbitrage
+        int currencyCount = 500;
+        int productCount = 600;
+        Random random = new Random(42);
+        double[] prices = new double[currencyCount];
+        for (int i = 0; i < currencyCount; i++) {
+            prices[i] = Math.exp(random.nextGaussian() * 3);
+        }
+        List<Conversion> market = new ArrayList<>();
+        for (int i = 1; i < currencyCount; i++) {
+            market.add(createMarketConversion("C", i, random.nextInt(i), prices, random));
+        }
+        for (int i = currencyCount; i <= productCount; i++) {
+            market.add(createMarketConversion("C", random.nextInt(currencyCount), random.nextInt(currencyCount), prices, random));
+        }
+        router = new CurrencyRouter(market);
+        long start = System.nanoTime();
+        int queries = 1000;
+        for (int i = 0; i < queries; i++) {
+            String from = "C" + random.nextInt(currencyCount);
+            String to = "C" + random.nextInt(currencyCount);
+            Route best = router.getBestRoute(from, to);
+            Route bounded = router.getBestRoute(from, to, currencyCount - 1);
+            assert Math.abs(best.rate / bounded.rate - 1) < 1e-9;
+            // Converting through the market can only lose to the spread
+            assert best.rate <= prices[Integer.parseInt(from.substring(1))] / prices[Integer.parseInt(to.substring(1))] * (1 + 1e-9);
+            assert best.currencies.get(0).equals(from) && best.currencies.get(best.currencies.size() - 1).equals(to);
+        }
+        System.out.println(String.format("%d currencies, %d products: %d best and hop limited routes in %d ms",
+                currencyCount, productCount, queries, (System.nanoTime() - start) / 1_000_000));
+
+        // Valuing every currency in C0, in a single run each way instead of a search per currency
+        start = System.nanoTime();
+        CurrencyRates toC0 = router.getConversionRatesTo("C0");
+        CurrencyRates fromC0 = router.getConversionRates("C0");
+        long batchNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < currencyCount; i++) {
+            String currency = "C" + i;
+            assert Math.abs(toC0.getRate(currency) / router.getBestRoute(currency, "C0").rate - 1) < 1e-12;
+            assert Math.abs(fromC0.getRate(currency) / router.getBestRoute("C0", currency).rate - 1) < 1e-12;
+        }
+        System.out.println(String.format("%d currencies: rates to and from C0 in %d us, against %d us for a search per currency",
+                currencyCount, batchNanos / 1_000, (System.nanoTime() - start) / 1_000));
+
+        // Independent exchanges, every fourth of which sells its C1 far above the price of buying it back elsewhere
+        int exchangeCount = 20;
+        currencyCount = 100;
+        productCount = 250;
+        double[][] exchangePrices = new double[exchangeCount][currencyCount];
+        List<Conversion> quotes = new ArrayList<>();
+        for (int exchange = 0; exchange < exchangeCount; exchange++) {
+            String prefix = String.format("E%dC", exchange);
+            for (int i = 0; i < currencyCount; i++) {
+                exchangePrices[exchange][i] = Math.exp(random.nextGaussian() * 3);
+            }
+            for (int i = 1; i < productCount; i++) {
+                int a = i < currencyCount ? i : random.nextInt(currencyCount);
+                int b = i < currencyCount ? random.nextInt(i) : random.nextInt(currencyCount);
+                if (a != b) {
+                    quotes.add(createMarketConversion(prefix, a, b, exchangePrices[exchange], random));
+                }
+            }
+            if (exchange % 4 == 3) {
+                double mid = exchangePrices[exchange][1] / exchangePrices[exchange][0];
+                quotes.add(new Conversion(prefix + 1, prefix + 0, mid * 1.5, mid * 1.6));
+            }
+        }
+        router = new CurrencyRouter(quotes);
+        start = System.nanoTime();
+        cycles = router.findArbitrageCycles();
+        long firstNanos = System.nanoTime() - start;
+        assert exchangesOf(cycles).equals(Arrays.asList("E11", "E15", "E19", "E3", "E7"));
+        for (Route cycle : cycles) {
+            assert cycle.rate > 1;
+            assert cycle.currencies.get(0).equals(cycle.currencies.get(cycle.currencies.size() - 1));
+        }
+        router.update(createMarketConversion("E3C", 1, 0, exchangePrices[3], random));
+        start = System.nanoTime();
+        cycles = router.findArbitrageCycles();
+        long recheckNanos = System.nanoTime() - start;
+        assert exchangesOf(cycles).equals(Arrays.asList("E11", "E15", "E19", "E7"));
+        System.out.println(String.format("%d currencies, %d products: arbitrage cycles found in %d us, rechecked after an update in %d us",
+                exchangeCount * currencyCount, quotes.size(), firstNanos / 1_000, recheckNanos / 1_000));
+
+        System.out.println("All tests passed.");
+    }
+
+    private static List<String> exchangesOf(List<Route> cycles) {
+        TreeSet<String> exchanges = new TreeSet<>();
+        for (Route cycle : cycles) {
+            String currency = cycle.currencies.get(0);
+            exchanges.add(currency.substring(0, currency.indexOf('C')));
+        }
+        return new ArrayList<>(exchanges);
+    }
+
+    private static Conversion createMarketConversion(String prefix, int a, int b, double[] prices, Random random) {
+        double mid = prices[a] / prices[b];
+        double spread = 0.001 + random.nextDouble() * 0.01;
+        return new Conversion(prefix + a, prefix + b, mid * (1 - spread), mid * (1 + spread));
+    }
+
+    public CurrencyRouter(List<Conversion> conversions) {
+        for (Conversion conversion : conversions) {
+            update(conversion);
+        }
+    }
+
+    /**
+     * Returns the route with the best rate from fromCurrency to toCurrency, over any number of hops.
+     * Throws an IllegalStateException if a profitable cycle makes this rate unbounded.
+     */
+    public Route getBestRoute(String fromCurrency, String toCurrency) {
+        int source = idOf(fromCurrency);
+        int target = idOf(toCurrency);
+        if (source == target) {
+            return new Route(Collections.singletonList(fromCurrency), 1.0);
+        }
+
+        prepareQuery();
+        int improvedInLastRound = relaxFromSource(source, false);
+        if (improvedInLastRound != NONE) {
+            int unbounded = markUnbounded(false);
+            if (stamp[target] == unbounded) {
+                throw new IllegalStateException(String.format("Arbitrage cycle %s makes the conversion from %s to %s unbounded.",
+                        describeCycle(improvedInLastRound), fromCurrency, toCurrency));
+            }
+        }
+        if (distance[target] == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException(String.format("There is no conversion from %s to %s.", fromCurrency, toCurrency));
+        }
+        return buildRoute(target, parentEdge, 0, 0);
+    }
+
+    /**
+     * Returns the route with the best rate from fromCurrency to toCurrency in at most maxHops conversions.
+     * A currency may be traded through more than once if the route goes around a profitable cycle.
+     * Throws an IllegalStateException if maxHops allows going around a profitable cycle reaching toCurrency for ever,
+     * as the rate then grows with maxHops without bound.
+     */
+    public Route getBestRoute(String fromCurrency, String toCurrency, int maxHops) {
+        if (maxHops < 1) {
+            throw new IllegalArgumentException("maxHops must be at least 1");
+        }
+        int source = idOf(fromCurrency);
+        int target = idOf(toCurrency);
+
+        prepareQuery();
+        // Without a profitable cycle no route improves past n - 1 hops, so n rounds are enough to tell
+        int rounds = relaxFromSource(source, Math.min(maxHops, currencyCount));
+        if (maxHops > currencyCount && rounds == currencyCount) {
+            int unbounded = markUnbounded(false);
+            if (stamp[target] == unbounded) {
+                int improvedInLastRound = relaxFromSource(source, false);
+                throw new IllegalStateException(String.format("Arbitrage cycle %s makes the conversion from %s to %s unbounded.",
+                        describeCycle(improvedInLastRound), fromCurrency, toCurrency));
+            }
+        }
+        if (distance[target] == Double.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException(String.format("There is no conversion from %s to %s in %d hops.", fromCurrency, toCurrency, maxHops));
+        }
+        return buildRoute(target, roundParentEdge, rounds, currencyCount);
+    }
+
+    /**
+     * Returns the best rates from fromCurrency to every currency, from a single run of Bellman-Ford.
+     */
+    public CurrencyRates getConversionRates(String fromCurrency) {
+        return getConversionRates(idOf(fromCurrency), false);
+    }
+
+    /**
+     * Returns the best rates from every currency to toCurrency, from a single run of Bellman-Ford over the edges
+     * taken backwards.
+     */
+    public CurrencyRates getConversionRatesTo(String toCurrency) {
+        return getConversionRates(idOf(toCurrency), true);
+    }
+
+    /**
+     * Replaces the bid and ask of the conversion between currencyA and currencyB, adding it if it is new.
+     */
+    public void update(Conversion conversion) {
+        if (!(conversion.bid > 0) || !(conversion.ask > 0)) {
+            throw new IllegalArgumentException(String.format("Conversion %s-%s must have a positive bid and ask.",
+                    conversion.currencyA, conversion.currencyB));
+        }
+        String productId = conversion.currencyA + "-" + conversion.currencyB;
+        Integer id = conversionIds.get(productId);
+        if (id == null) {
+            int currencyA = internCurrency(conversion.currencyA);
+            int currencyB = internCurrency(conversion.currencyB);
+            conversionIds.put(productId, edgeCount / 2);
+            addEdge(currencyA, currencyB, conversion.bid);
+            addEdge(currencyB, currencyA, 1 / conversion.ask);
+            adjacencyStale = true;
+            int root = unionComponents(currencyA, currencyB);
+            componentCycles.set(root, null);
+        } else {
+            setEdgeRate(2 * id, conversion.bid);
+            setEdgeRate(2 * id + 1, 1 / conversion.ask);
+            componentCycles.set(findComponent(edgeFrom[2 * id]), null);
+        }
+    }
+
+    /**
+     * Returns the arbitrage cycles of the currency graph, each as a Route from a currency back to itself whose rate
+     * is the profit factor. Every component with arbitrage has at least one cycle, and the cycles returned for a
+     * component are the cycles of the parent edges left by Bellman-Ford, not every profitable cycle there is.
+     */
+    public List<Route> findArbitrageCycles() {
+        prepareQuery();
+        // Counting sort of the currencies by the root of their component
+        int[] memberStart = new int[currencyCount + 1];
+        int[] members = new int[currencyCount];
+        for (int currency = 0; currency < currencyCount; currency++) {
+            memberStart[findComponent(currency) + 1]++;
+        }
+        for (int root = 0; root < currencyCount; root++) {
+            memberStart[root + 1] += memberStart[root];
+        }
+        int[] next = Arrays.copyOf(memberStart, currencyCount);
+        for (int currency = 0; currency < currencyCount; currency++) {
+            members[next[findComponent(currency)]++] = currency;
+        }
+
+        List<Route> cycles = new ArrayList<>();
+        for (int root = 0; root < currencyCount; root++) {
+            if (componentParent[root] != root) {
+                continue;
+            }
+            if (componentCycles.get(root) == null) {
+                componentCycles.set(root, findArbitrageCycles(members, memberStart[root], memberStart[root + 1]));
+            }
+            cycles.addAll(componentCycles.get(root));
+        }
+        return cycles;
+    }
+
+    private CurrencyRates getConversionRates(int start, boolean towardsTarget) {
+        prepareQuery();
+        int improvedInLastRound = relaxFromSource(start, towardsTarget);
+        double[] rates = new double[currencyCount];
+        for (int currency = 0; currency < currencyCount; currency++) {
+            rates[currency] = Math.exp(-distance[currency]);
+        }
+        if (improvedInLastRound != NONE) {
+            int unbounded = markUnbounded(towardsTarget);
+            for (int currency = 0; currency < currencyCount; currency++) {
+                if (stamp[currency] == unbounded) {
+                    rates[currency] = Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        return new CurrencyRates(currencyIds, currencies, rates);
+    }
+
+    private void addEdge(int from, int to, double rate) {
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeRate = Arrays.copyOf(edgeRate, capacity);
+            edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+        }
+        edgeFrom[edgeCount] = from;
+        edgeTo[edgeCount] = to;
+        setEdgeRate(edgeCount++, rate);
+    }
+
+    private void setEdgeRate(int edge, double rate) {
+        edgeRate[edge] = rate;
+        edgeWeight[edge] = -Math.log(rate);
+    }
+
+    private int idOf(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format("Unknown currency %s.", currency));
+        }
+        return id;
+    }
+
+    private int internCurrency(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id != null) {
+            return id;
+        }
+        if (currencyCount == currencies.length) {
+            currencies = Arrays.copyOf(currencies, currencyCount * 2);
+            componentParent = Arrays.copyOf(componentParent, currencyCount * 2);
+        }
+        currencies[currencyCount] = currency;
+        componentParent[currencyCount] = currencyCount;
+        componentCycles.add(null);
+        currencyIds.put(currency, currencyCount);
+        return currencyCount++;
+    }
+
+    private int findComponent(int currency) {
+        while (componentParent[currency] != currency) {
+            componentParent[currency] = componentParent[componentParent[currency]];
+            currency = componentParent[currency];
+        }
+        return currency;
+    }
+
+    private int unionComponents(int currencyA, int currencyB) {
+        int rootA = findComponent(currencyA);
+        int rootB = findComponent(currencyB);
+        componentParent[rootB] = rootA;
+        return rootA;
+    }
+
+    private void prepareQuery() {
+        if (adjacencyStale) {
+            buildAdjacency();
+            adjacencyStale = false;
+        }
+        if (distance.length < currencyCount) {
+            distance = new double[currencyCount];
+            previousDistance = new double[currencyCount];
+            parentEdge = new int[currencyCount];
+            frontier = new int[currencyCount];
+            nextFrontier = new int[currencyCount];
+            stamp = new int[currencyCount];
+            epoch = 0;
+        }
+    }
+
+    /**
+     * Counting sort of the edges by the currency they leave.
+     */
+    private void buildAdjacency() {
+        adjacencyStart = new int[currencyCount + 1];
+        adjacentEdges = new int[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            adjacencyStart[edgeFrom[edge] + 1]++;
+        }
+        for (int currency = 0; currency < currencyCount; currency++) {
+            adjacencyStart[currency + 1] += adjacencyStart[currency];
+        }
+        int[] next = Arrays.copyOf(adjacencyStart, currencyCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            adjacentEdges[next[edgeFrom[edge]]++] = edge;
+        }
+    }
+
+    /**
+     * Bellman-Ford from source, updating distances in place. Without negative cycles no currency can improve after
+     * round n - 1, so a currency improved in round n is returned as the witness of a negative cycle, else NONE.
+     * Towards a target, source is the target and the distances are of the best routes from every currency to it.
+     */
+    private int relaxFromSource(int source, boolean towardsTarget) {
+        Arrays.fill(distance, 0, currencyCount, Double.POSITIVE_INFINITY);
+        Arrays.fill(parentEdge, 0, currencyCount, NONE);
+        distance[source] = 0;
+        frontier[0] = source;
+        int frontierSize = 1;
+
+        for (int round = 1; frontierSize > 0; round++) {
+            frontierSize = relaxRound(frontierSize, towardsTarget);
+            if (round == currencyCount && frontierSize > 0) {
+                return frontier[0];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Relaxes the edges leaving the frontier in place, and makes the currencies improved the new frontier.
+     * Towards a target the edges entering the frontier are relaxed instead, backwards.
+     * Returns the size of the new frontier.
+     */
+    private int relaxRound(int frontierSize, boolean towardsTarget) {
+        int mark = nextEpoch();
+        int nextFrontierSize = 0;
+        for (int i = 0; i < frontierSize; i++) {
+            int currency = frontier[i];
+            for (int j = adjacencyStart[currency]; j < adjacencyStart[currency + 1]; j++) {
+                int edge = adjacentEdges[j];
+                // Edges 2k and 2k + 1 join the same currencies in opposite directions
+                if (towardsTarget) {
+                    edge ^= 1;
+                }
+                int next = towardsTarget ? edgeFrom[edge] : edgeTo[edge];
+                double candidate = distance[currency] + edgeWeight[edge];
+                if (candidate < distance[next] - EPSILON) {
+                    distance[next] = candidate;
+                    parentEdge[next] = edge;
+                    if (stamp[next] != mark) {
+                        stamp[next] = mark;
+                        nextFrontier[nextFrontierSize++] = next;
+                    }
+                }
+            }
+        }
+        int[] swap = frontier;
+        frontier = nextFrontier;
+        nextFrontier = swap;
+        return nextFrontierSize;
+    }
+
+    /**
+     * Bellman-Ford over the component members[from .. to) as if from a virtual source with an edge of weight 0 to
+     * each of its currencies, so every distance starts at 0. The currencies still improved in round |V_c| lead to the
+     * negative cycles through their parent edges.
+     */
+    private List<Route> findArbitrageCycles(int[] members, int from, int to) {
+        int size = to - from;
+        for (int i = from; i < to; i++) {
+            distance[members[i]] = 0;
+            parentEdge[members[i]] = NONE;
+        }
+        System.arraycopy(members, from, frontier, 0, size);
+        int frontierSize = size;
+        for (int round = 1; round <= size && frontierSize > 0; round++) {
+            frontierSize = relaxRound(frontierSize, false);
+        }
+        if (frontierSize == 0) {
+            return Collections.emptyList();
+        }
+
+        List<Route> cycles = new ArrayList<>();
+        int reported = nextEpoch();
+        for (int i = 0; i < frontierSize; i++) {
+            int start = walkToCycle(frontier[i], size);
+            if (start == NONE || stamp[start] == reported) {
+                continue;
+            }
+            // Every currency has a single parent edge, so cycles of parent edges never share a currency
+            int currency = start;
+            do {
+                stamp[currency] = reported;
+                currency = edgeFrom[parentEdge[currency]];
+            } while (currency != start);
+            cycles.add(traceCycle(start));
+        }
+        return cycles;
+    }
+
+    /**
+     * Bellman-Ford from source where round r only extends the distances of round r - 1, so after round r every
+     * distance is the best over at most r hops. Row r of roundParentEdge holds the last edge of those best routes.
+     * Returns the number of rounds run, which is less than maxHops if the distances stopped improving.
+     */
+    private int relaxFromSource(int source, int maxHops) {
+        int rowSize = currencyCount;
+        Arrays.fill(distance, 0, rowSize, Double.POSITIVE_INFINITY);
+        distance[source] = 0;
+        ensureRoundParentRows(1);
+        Arrays.fill(roundParentEdge, 0, rowSize, NONE);
+        frontier[0] = source;
+        int frontierSize = 1;
+
+        int round = 0;
+        while (round < maxHops && frontierSize > 0) {
+            round++;
+            ensureRoundParentRows(round + 1);
+            System.arraycopy(distance, 0, previousDistance, 0, rowSize);
+            System.arraycopy(roundParentEdge, (round - 1) * rowSize, roundParentEdge, round * rowSize, rowSize);
+
+            int mark = nextEpoch();
+            int nextFrontierSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int currency = frontier[i];
+                for (int j = adjacencyStart[currency]; j < adjacencyStart[currency + 1]; j++) {
+                    int edge = adjacentEdges[j];
+                    int next = edgeTo[edge];
+                    double candidate = previousDistance[currency] + edgeWeight[edge];
+                    if (candidate < distance[next] - EPSILON) {
+                        distance[next] = candidate;
+                        roundParentEdge[round * rowSize + next] = edge;
+                        if (stamp[next] != mark) {
+                            stamp[next] = mark;
+                            nextFrontier[nextFrontierSize++] = next;
+                        }
+                    }
+                }
+            }
+            int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierSize = nextFrontierSize;
+        }
+        return round;
+    }
+
+    private void ensureRoundParentRows(int rows) {
+        long required = (long) rows * currencyCount;
+        if (required > roundParentEdge.length) {
+            roundParentEdge = Arrays.copyOf(roundParentEdge, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, 2L * roundParentEdge.length)));
+        }
+    }
+
+    /**
+     * After Bellman-Ford, every negative cycle reachable from the source still has an edge that can be relaxed, and
+     * every currency reachable from such an edge has an unbounded best rate. Stamps these currencies with the
+     * returned mark. Towards a target, these are the currencies from which such an edge is reachable.
+     */
+    private int markUnbounded(boolean towardsTarget) {
+        int mark = nextEpoch();
+        int top = 0;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int currency = towardsTarget ? edgeTo[edge] : edgeFrom[edge];
+            int next = towardsTarget ? edgeFrom[edge] : edgeTo[edge];
+            if (distance[currency] + edgeWeight[edge] < distance[next] - EPSILON && stamp[next] != mark) {
+                stamp[next] = mark;
+                frontier[top++] = next;
+            }
+        }
+        while (top > 0) {
+            int currency = frontier[--top];
+            for (int j = adjacencyStart[currency]; j < adjacencyStart[currency + 1]; j++) {
+                // The currencies with an edge to currency are the ones its edges lead to
+                int next = edgeTo[adjacentEdges[j]];
+                if (stamp[next] != mark) {
+                    stamp[next] = mark;
+                    frontier[top++] = next;
+                }
+            }
+        }
+        return mark;
+    }
+
+    private String describeCycle(int improvedInLastRound) {
+        int start = walkToCycle(improvedInLastRound, currencyCount);
+        if (start == NONE) {
+            return String.format("through %s", currencies[improvedInLastRound]);
+        }
+        return String.join(" -> ", traceCycle(start).currencies);
+    }
+
+    /**
+     * Following the parent edges n times from a currency improved in round n of Bellman-Ford ends on a negative
+     * cycle. Returns that currency, or NONE if a currency without parent is reached first.
+     */
+    private int walkToCycle(int improvedInLastRound, int n) {
+        int currency = improvedInLastRound;
+        for (int i = 0; i < n; i++) {
+            int edge = parentEdge[currency];
+            if (edge == NONE) {
+                return NONE;
+            }
+            currency = edgeFrom[edge];
+        }
+        return currency;
+    }
+
+    /**
+     * Returns the cycle of parent edges through start, as a Route from start back to itself.
+     */
+    private Route traceCycle(int start) {
+        List<String> cycle = new ArrayList<>();
+        double rate = 1.0;
+        int currency = start;
+        do {
+            cycle.add(currencies[currency]);
+            rate *= edgeRate[parentEdge[currency]];
+            currency = edgeFrom[parentEdge[currency]];
+        } while (currency != start);
+        cycle.add(currencies[start]);
+        Collections.reverse(cycle);
+        return new Route(cycle, rate);
+    }
+
+    /**
+     * Follows the parent edges back from target, starting in row of parents and moving up a row per hop.
+     * The parents of an unlimited search are a single row, passed with a rowSize of 0.
+     */
+    private Route buildRoute(int target, int[] parents, int row, int rowSize) {
+        List<String> path = new ArrayList<>();
+        double rate = 1.0;
+        int currency = target;
+        for (int edge = parents[row * rowSize + currency]; edge != NONE; edge = parents[--row * rowSize + currency]) {
+            path.add(currencies[currency]);
+            rate *= edgeRate[edge];
+            currency = edgeFrom[edge];
+        }
+        path.add(currencies[currency]);
+        Collections.reverse(path);
+        return new Route(path, rate);
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+}
@@ -0,0 +1,401 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Converts an amount through the full depth of the order books, instead of at the rate of their top level.
+Each order book gives an edge selling currencyA into its bids and an edge buying currencyA from its asks. The levels
+of an edge are kept as cumulative (input, output) points in primitive arrays, starting at (0, 0), so the output of
+an edge for any input is found by binary search over its levels and interpolation inside the level. This output
+grows with the input at a falling rate, so holding more of a currency never converts to less of another: the best
+amount of every currency is computed by Bellman-Ford over amounts, like the best rates of CurrencyRouter.
+A large amount can be split into slices, each sent along the best route through the depth which the previous slices
+left, so it spreads over several routes once the best one gets thin. Amounts beyond the depth of a book cannot go
+through its edge.
+
+Runtime Complexity:
+  * DepthRouter is O(|Levels| + |Conversions|)
+  * convert is O(slices * |Vertices| * |Edges| * log(levels per book)) in the worst case, and about
+    O(slices * d * |Edges| * log(levels per book)) when the best routes have at most d hops
+Space Complexity: O(|Vertices| + |Edges| + |Levels|)*/
+
+package currencyconversion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class DepthRouter {
+    private static final int NONE = -1;
+    private static final double EPSILON = 1e-12;
+
+    private final HashMap<String, Integer> currencyIds = new HashMap<>();
+    private final int currencyCount;
+
+    // The edges leaving currency c are edgeStart[c] .. edgeStart[c + 1]
+    private final int[] edgeStart;
+    private final int[] edgeFrom;
+    private final int[] edgeTo;
+
+    // The level points of edge e are levelStart[e] .. levelStart[e + 1], the first one being (0, 0)
+    private final int[] levelStart;
+    private final double[] cumulativeInput;
+    private final double[] cumulativeOutput;
+
+    // Scratch arrays of a query
+    private final double[] held;
+    private final int[] parentEdge;
+    private final double[] usedInput;
+    private final int[] routeEdges;
+    private int[] frontier;
+    private int[] nextFrontier;
+    private final int[] stamp;
+    private int epoch;
+
+    public static void main(String[] args) {
+        List<OrderBook> books = new ArrayList<>();
+        books.add(new OrderBook("ETH", "USD", new double[] { 5, 4 }, new double[] { 1, 2 }, new double[] { 6, 7 }, new double[] { 1, 2 }));
+        books.add(new OrderBook("ETH", "BTC", new double[] { 2 }, new double[] { 10 }, new double[] { 3 }, new double[] { 10 }));
+        books.add(new OrderBook("BTC", "USD", new double[] { 3, 2 }, new double[] { 5, 100 }, new double[] { 4 }, new double[] { 10 }));
+        DepthRouter router = new DepthRouter(books);
+
+        // The top of the books, as long as the amount fits in the first levels
+        assert router.convert("ETH", "USD", 1) == 6;
+        // 4 BTC sold at 3, against 1 ETH sold at 5 and 1 at 4
+        assert router.convert("ETH", "USD", 2) == 12;
+        // 5 BTC sold at 3 and 3 at 2, the direct book having only 3 ETH of bids
+        assert router.convert("ETH", "USD", 4) == 21;
+        // Slices of 1 ETH, the last two going directly once BTC-USD is down to its bids at 2
+        assert router.convert("ETH", "USD", 4, 4) == 22;
+        // 1 ETH bought at 6 and 2 at 7, against 5 BTC bought at 4 giving 5 / 3 ETH
+        assert router.convert("USD", "ETH", 20) == 3;
+        assert router.convert("BTC", "BTC", 7) == 7;
+        // The epoch wraps around clearing the stamps, so a stamp left from long ago never matches the new epoch
+        Arrays.fill(router.stamp, 1);
+        router.epoch = Integer.MAX_VALUE - 1;
+        assert router.convert("ETH", "USD", 4) == 21;
+        assert router.epoch < 100;
+        try {
+            router.convert("ETH", "USD", 100);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Order books from ETH to USD are not deep enough to convert 100.0 ETH.");
+        }
+        try {
+            router.convert("ETH", "XYZ", 1);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Unknown currency XYZ.");
+        }
+
+        // Random books on consistent prices, so without arbitrage
+        Random random = new Random(42);
+        int currencyCount = 400;
+        int levels = 50;
+        double[] prices = new double[currencyCount];
+        for (int i = 0; i < currencyCount; i++) {
+            prices[i] = Math.exp(random.nextGaussian() * 3);
+        }
+        // Distinct products, as CurrencyRouter keeps only the last quote of a product
+        List<OrderBook> market = new ArrayList<>();
+        HashSet<String> products = new HashSet<>();
+        for (int i = 1; i < currencyCount; i++) {
+            int b = random.nextInt(i);
+            products.add(i + "-" + b);
+            market.add(createOrderBook(i, b, levels, prices, random));
+        }
+        while (market.size() < 5 * currencyCount / 2) {
+            int a = random.nextInt(currencyCount);
+            int b = random.nextInt(currencyCount);
+            if (a != b && products.add(a + "-" + b)) {
+                market.add(createOrderBook(a, b, levels, prices, random));
+            }
+        }
+        router = new DepthRouter(market);
+        List<Conversion> conversions = new ArrayList<>();
+        for (OrderBook book : market) {
+            conversions.add(book.toConversion());
+        }
+        CurrencyRouter topOfBookRouter = new CurrencyRouter(conversions);
+
+        int queries = 1000;
+        long nanos = 0;
+        for (int i = 0; i < queries; i++) {
+            String from = "C" + random.nextInt(currencyCount);
+            String to = "C" + random.nextInt(currencyCount);
+            // A tiny amount converts at the best rate of the tops of the books
+            double tiny = 1e-9 / prices[Integer.parseInt(from.substring(1))];
+            double rate = router.convert(from, to, tiny) / tiny;
+            double topOfBookRate = topOfBookRouter.getBestRoute(from, to).rate;
+            assert Math.abs(rate - topOfBookRate) <= 1e-9 * topOfBookRate : rate + " " + topOfBookRate;
+
+            // An amount deep into the books, converting at a worse rate unless split
+            double large = 20 / prices[Integer.parseInt(from.substring(1))];
+            long start = System.nanoTime();
+            double single = router.convert(from, to, large);
+            nanos += System.nanoTime() - start;
+            double split = router.convert(from, to, large, 8);
+            assert single <= large * topOfBookRate * (1 + 1e-9);
+            assert split >= single * (1 - 1e-9) : split + " " + single;
+        }
+        System.out.println(String.format("%d currencies, %d books of %d levels: %d us per conversion through the depth",
+                currencyCount, market.size(), levels, nanos / queries / 1_000));
+
+        System.out.println("All tests passed.");
+    }
+
+    private static OrderBook createOrderBook(int a, int b, int levels, double[] prices, Random random) {
+        double mid = prices[a] / prices[b];
+        double[] bidPrices = new double[levels];
+        double[] bidSizes = new double[levels];
+        double[] askPrices = new double[levels];
+        double[] askSizes = new double[levels];
+        double spread = 0.001 + random.nextDouble() * 0.01;
+        for (int level = 0; level < levels; level++) {
+            bidPrices[level] = mid * (1 - spread * (level + 1));
+            askPrices[level] = mid * (1 + spread * (level + 1));
+            bidSizes[level] = random.nextDouble() / prices[a];
+            askSizes[level] = random.nextDouble() / prices[a];
+        }
+        return new OrderBook("C" + a, "C" + b, bidPrices, bidSizes, askPrices, askSizes);
+    }
+
+    public DepthRouter(List<OrderBook> books) {
+        for (OrderBook book : books) {
+            validate(book);
+            internCurrency(book.currencyA);
+            internCurrency(book.currencyB);
+        }
+        currencyCount = currencyIds.size();
+
+        // Counting sort of the edges by the currency they leave. Book i gives the edges slots[2i] and slots[2i + 1]
+        int edgeCount = 2 * books.size();
+        edgeStart = new int[currencyCount + 1];
+        for (OrderBook book : books) {
+            edgeStart[currencyIds.get(book.currencyA) + 1]++;
+            edgeStart[currencyIds.get(book.currencyB) + 1]++;
+        }
+        for (int currency = 0; currency < currencyCount; currency++) {
+            edgeStart[currency + 1] += edgeStart[currency];
+        }
+        int[] next = Arrays.copyOf(edgeStart, currencyCount);
+        int[] slots = new int[edgeCount];
+        edgeFrom = new int[edgeCount];
+        edgeTo = new int[edgeCount];
+        levelStart = new int[edgeCount + 1];
+        for (int i = 0; i < books.size(); i++) {
+            OrderBook book = books.get(i);
+            int currencyA = currencyIds.get(book.currencyA);
+            int currencyB = currencyIds.get(book.currencyB);
+            slots[2 * i] = next[currencyA]++;
+            slots[2 * i + 1] = next[currencyB]++;
+            edgeFrom[slots[2 * i]] = currencyA;
+            edgeTo[slots[2 * i]] = currencyB;
+            edgeFrom[slots[2 * i + 1]] = currencyB;
+            edgeTo[slots[2 * i + 1]] = currencyA;
+            levelStart[slots[2 * i] + 1] = book.bidPrices.length + 1;
+            levelStart[slots[2 * i + 1] + 1] = book.askPrices.length + 1;
+        }
+        for (int edge = 0; edge < edgeCount; edge++) {
+            levelStart[edge + 1] += levelStart[edge];
+        }
+
+        cumulativeInput = new double[levelStart[edgeCount]];
+        cumulativeOutput = new double[levelStart[edgeCount]];
+        for (int i = 0; i < books.size(); i++) {
+            OrderBook book = books.get(i);
+            // Selling currencyA into the bids, then buying currencyA from the asks with currencyB
+            int point = levelStart[slots[2 * i]];
+            for (int level = 0; level < book.bidPrices.length; level++, point++) {
+                cumulativeInput[point + 1] = cumulativeInput[point] + book.bidSizes[level];
+                cumulativeOutput[point + 1] = cumulativeOutput[point] + book.bidSizes[level] * book.bidPrices[level];
+            }
+            point = levelStart[slots[2 * i + 1]];
+            for (int level = 0; level < book.askPrices.length; level++, point++) {
+                cumulativeInput[point + 1] = cumulativeInput[point] + book.askSizes[level] * book.askPrices[level];
+                cumulativeOutput[point + 1] = cumulativeOutput[point] + book.askSizes[level];
+            }
+        }
+
+        held = new double[currencyCount];
+        parentEdge = new int[currencyCount];
+        usedInput = new double[edgeCount];
+        routeEdges = new int[currencyCount];
+        frontier = new int[currencyCount];
+        nextFrontier = new int[currencyCount];
+        stamp = new int[currencyCount];
+    }
+
+    /**
+     * Returns the most of toCurrency that amount of fromCurrency converts to along a single route.
+     */
+    public double convert(String fromCurrency, String toCurrency, double amount) {
+        return convert(fromCurrency, toCurrency, amount, 1);
+    }
+
+    /**
+     * Returns the most of toCurrency that amount of fromCurrency converts to when split into equal slices, each sent
+     * along the best route through the depth left by the previous slices.
+     * Throws an IllegalArgumentException if a slice cannot be converted within the depth of the books.
+     */
+    public double convert(String fromCurrency, String toCurrency, double amount, int slices) {
+        if (!(amount > 0) || slices < 1) {
+            throw new IllegalArgumentException("amount must be positive and slices at least 1");
+        }
+        int source = idOf(fromCurrency);
+        int target = idOf(toCurrency);
+        if (source == target) {
+            return amount;
+        }
+
+        Arrays.fill(usedInput, 0);
+        double slice = amount / slices;
+        double converted = 0;
+        for (int i = 0; i < slices; i++) {
+            if (!relaxFromSource(source, slice)) {
+                throw new IllegalStateException(String.format("Order books from %s to %s contain an arbitrage cycle.", fromCurrency, toCurrency));
+            }
+            if (held[target] == NONE) {
+                throw new IllegalArgumentException(String.format("Order books from %s to %s are not deep enough to convert %s %s.",
+                        fromCurrency, toCurrency, amount, fromCurrency));
+            }
+            converted += consumeRoute(source, target, slice);
+        }
+        return converted;
+    }
+
+    private static void validate(OrderBook book) {
+        if (book.bidPrices.length != book.bidSizes.length || book.askPrices.length != book.askSizes.length
+                || !isSortedLevels(book.bidPrices, book.bidSizes, -1) || !isSortedLevels(book.askPrices, book.askSizes, 1)) {
+            throw new IllegalArgumentException(String.format("Order book %s-%s must have positive levels sorted from the best price.",
+                    book.currencyA, book.currencyB));
+        }
+    }
+
+    /**
+     * Whether every price and size is positive, and the prices are sorted in the direction of the sign of order.
+     */
+    private static boolean isSortedLevels(double[] prices, double[] sizes, int order) {
+        for (int level = 0; level < prices.length; level++) {
+            if (!(prices[level] > 0) || !(sizes[level] > 0) || prices[level] == Double.POSITIVE_INFINITY
+                    || level > 0 && Math.signum(prices[level] - prices[level - 1]) == -order) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int idOf(String currency) {
+        Integer id = currencyIds.get(currency);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format("Unknown currency %s.", currency));
+        }
+        return id;
+    }
+
+    private void internCurrency(String currency) {
+        if (!currencyIds.containsKey(currency)) {
+            currencyIds.put(currency, currencyIds.size());
+        }
+    }
+
+    /**
+     * Output of edge for input, or NONE if the input is beyond the depth of its levels.
+     */
+    private double output(int edge, double input) {
+        int first = levelStart[edge];
+        int last = levelStart[edge + 1] - 1;
+        if (input > cumulativeInput[last]) {
+            return NONE;
+        }
+        int point = Arrays.binarySearch(cumulativeInput, first, last + 1, input);
+        if (point >= 0) {
+            return cumulativeOutput[point];
+        }
+        // Interpolate inside the level ending at the first point past input
+        point = -point - 1;
+        double price = (cumulativeOutput[point] - cumulativeOutput[point - 1]) / (cumulativeInput[point] - cumulativeInput[point - 1]);
+        return cumulativeOutput[point - 1] + (input - cumulativeInput[point - 1]) * price;
+    }
+
+    /**
+     * Output of edge for input on top of the input already sent through it by previous slices, or NONE.
+     */
+    private double residualOutput(int edge, double input) {
+        double used = usedInput[edge];
+        double total = output(edge, used + input);
+        return total == NONE || used == 0 ? total : total - output(edge, used);
+    }
+
+    /**
+     * Bellman-Ford over the amounts held after converting input of source, updating them in place and relaxing in
+     * every round only the edges leaving the currencies improved in the previous round. Returns false if a currency
+     * still improves in round n, which takes a profitable cycle.
+     */
+    private boolean relaxFromSource(int source, double input) {
+        Arrays.fill(held, NONE);
+        Arrays.fill(parentEdge, NONE);
+        held[source] = input;
+        frontier[0] = source;
+        int frontierSize = 1;
+
+        for (int round = 1; frontierSize > 0; round++) {
+            int mark = nextEpoch();
+            int nextFrontierSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int currency = frontier[i];
+                for (int edge = edgeStart[currency]; edge < edgeStart[currency + 1]; edge++) {
+                    int next = edgeTo[edge];
+                    if (next == source) {
+                        continue;
+                    }
+                    double candidate = residualOutput(edge, held[currency]);
+                    if (candidate > held[next] && candidate - held[next] > EPSILON * candidate) {
+                        held[next] = candidate;
+                        parentEdge[next] = edge;
+                        if (stamp[next] != mark) {
+                            stamp[next] = mark;
+                            nextFrontier[nextFrontierSize++] = next;
+                        }
+                    }
+                }
+            }
+            int[] swap = frontier;
+            frontier = nextFrontier;
+            nextFrontier = swap;
+            frontierSize = nextFrontierSize;
+            if (round == currencyCount && frontierSize > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+
+    /**
+     * Sends input of source along the parent edges to target, using up the depth of their books.
+     * Returns the amount of target it converts to.
+     */
+    private double consumeRoute(int source, int target, double input) {
+        int hops = 0;
+        for (int currency = target; currency != source; currency = edgeFrom[parentEdge[currency]]) {
+            routeEdges[hops++] = parentEdge[currency];
+        }
+        double amount = input;
+        for (int hop = hops - 1; hop >= 0; hop--) {
+            int edge = routeEdges[hop];
+            double output = residualOutput(edge, amount);
+            usedInput[edge] += amount;
+            amount = output;
+        }
+        return amount;
+    }
+}
@@ -0,0 +1,37 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+package currencyconversion;
+
+public class OrderBook {
+    String currencyA;
+    String currencyB;
+
+    /**
+     * Price levels at which you can sell currencyA for currencyB, from the highest price. bidSizes are in currencyA.
+     */
+    double[] bidPrices;
+    double[] bidSizes;
+
+    /**
+     * Price levels at which you can buy currencyA with currencyB, from the lowest price. askSizes are in currencyA.
+     */
+    double[] askPrices;
+    double[] askSizes;
+
+    public OrderBook(String currencyA, String currencyB, double[] bidPrices, double[] bidSizes, double[] askPrices, double[] askSizes) {
+        this.currencyA = currencyA;
+        this.currencyB = currencyB;
+        this.bidPrices = bidPrices;
+        this.bidSizes = bidSizes;
+        this.askPrices = askPrices;
+        this.askSizes = askSizes;
+    }
+
+    /**
+     * Top of the book, the Conversion of the best bid and ask.
+     */
+    public Conversion toConversion() {
+        return new Conversion(currencyA, currencyB, bidPrices[0], askPrices[0]);
+    }
+}
@@ -1,6 +1,8 @@
 //Author: Tushar Jaiswal
 //Creation Date: 01/10/2021
 
+package currencyconversion;
+
 class Pair<K, V> {
     K key;
     V value;
@@ -0,0 +1,17 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+package currencyconversion;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Source of live quotes, such as an exchange feed or a replay of recorded quotes.
+ */
+public interface QuoteSource {
+    /**
+     * Delivers every quote to onQuote, in order, until the source is exhausted.
+     */
+    void feed(Consumer<Conversion> onQuote) throws IOException;
+}
@@ -0,0 +1,81 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Replays quotes recorded in a file, one per line as timestampMillis,currencyA-currencyB,bid,ask. Blank lines and lines
+starting with # are skipped. With a speed of 0 the quotes are delivered as fast as possible, else the gaps between
+their timestamps are reproduced, divided by speed.
+
+Runtime Complexity: feed is O(|Quotes|), plus the replayed gaps
+Space Complexity: O(1)*/
+
+package currencyconversion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class ReplayQuoteSource implements QuoteSource {
+    private final Path file;
+    private final double speed;
+
+    public ReplayQuoteSource(Path file) {
+        this(file, 0);
+    }
+
+    public ReplayQuoteSource(Path file, double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("speed cannot be negative");
+        }
+        this.file = file;
+        this.speed = speed;
+    }
+
+    @Override
+    public void feed(Consumer<Conversion> onQuote) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            long firstTimestamp = 0;
+            long startNanos = System.nanoTime();
+            boolean first = true;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                String[] currencies = fields.length == 4 ? fields[1].split("-") : new String[0];
+                if (currencies.length != 2) {
+                    throw new IOException(String.format("Malformed quote on line %d of %s.", lineNumber, file));
+                }
+                long timestamp = Long.parseLong(fields[0]);
+                if (first) {
+                    firstTimestamp = timestamp;
+                    first = false;
+                }
+                if (speed > 0) {
+                    waitUntil(startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(timestamp - firstTimestamp) / speed));
+                }
+                onQuote.accept(new Conversion(currencies[0], currencies[1], Double.parseDouble(fields[2]), Double.parseDouble(fields[3])));
+            }
+        }
+    }
+
+    private static void waitUntil(long deadlineNanos) throws InterruptedIOException {
+        long waitNanos = deadlineNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying quotes.");
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+package currencyconversion;
+
+import java.util.List;
+
+public class Route {
+    /**
+     * Currencies traded through, from the currency converted from to the currency converted to, both included.
+     */
+    List<String> currencies;
+
+    /**
+     * Amount of the last currency that you get for 1 unit of the first currency along this route.
+     */
+    double rate;
+
+    public Route(List<String> currencies, double rate) {
+        this.currencies = currencies;
+        this.rate = rate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%s)", String.join(" -> ", currencies), rate);
+    }
+}
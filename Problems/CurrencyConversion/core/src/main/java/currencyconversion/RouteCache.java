@@ -0,0 +1,310 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*LRU cache of the best routes of a CurrencyRouter, keyed by (from, to), for traffic asking for the same few pairs.
+A cached route stays valid until:
+  * a rate on its path changes, tracked by a version stamp per directed currency pair which every quote changing the
+    rate of that pair bumps. The cached route keeps the stamps it was computed with.
+  * a rate u -> v gets better, or a product adds it, such that it may open a better route. A cached route keeps the
+    best rates rateTo from every currency to its target, as of when it was computed, and the new rate r matters only
+    if r * rateTo[v] > rateTo[u], i.e. if it improves the best rate from u to the target. This is the test
+    rateFrom[u] * r * rateTo[v] > rate of the route, with rateFrom[u] * rateTo[u] <= rate of the route, made strict
+    enough to stay sound when several rates got better since the route was cached, or when the new rate closes a
+    profitable cycle. Better rates are kept in a log of the last IMPROVEMENT_LOG_SIZE, and a cached route remembers
+    how far into the log it has been checked. A route further behind than the log is dropped.
+A rate getting worse off the path cannot make another route better, so it leaves the cached route valid.
+Stale routes are detected lazily when they are read, so an update costs O(1) whatever the size of the cache.
+Not thread-safe, like CurrencyRouter.
+
+Runtime Complexity:
+  * getBestRoute is O(length of the route + rates got better since its last read) on a hit, plus the cost of two
+    runs of CurrencyRouter.getBestRoute on a miss, for the route and its rateTo
+  * update is O(1) amortized, plus the cost of CurrencyRouter.update
+Space Complexity: O(capacity * |Vertices| + |Vertices| + |Edges|)*/
+
+package currencyconversion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class RouteCache {
+    private static final int IMPROVEMENT_LOG_SIZE = 1024;
+
+    private final CurrencyRouter router;
+    private final LinkedHashMap<String, CachedRoute> routes;
+
+    // Last bid and ask of every product, to tell which rates of a quote got better or worse
+    private final HashMap<String, double[]> quotes = new HashMap<>();
+    private final HashMap<String, EdgeVersion> edgeVersions = new HashMap<>();
+
+    // Ring buffer of the last rates which got better, from improvedFrom to improvedTo
+    private final String[] improvedFrom = new String[IMPROVEMENT_LOG_SIZE];
+    private final String[] improvedTo = new String[IMPROVEMENT_LOG_SIZE];
+    private final double[] improvedRate = new double[IMPROVEMENT_LOG_SIZE];
+    private long improvementCount;
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+
+    private static final class EdgeVersion {
+        long version;
+    }
+
+    private static final class CachedRoute {
+        final Route route;
+        final EdgeVersion[] edges;
+        final long[] versions;
+        // Best rates from every currency to the target of the route, when it was computed
+        final CurrencyRates rateTo;
+        // Number of rates which got better, up to which the route is known to still be the best
+        long improvementsChecked;
+
+        CachedRoute(Route route, EdgeVersion[] edges, CurrencyRates rateTo, long improvementsChecked) {
+            this.route = route;
+            this.edges = edges;
+            this.versions = new long[edges.length];
+            for (int i = 0; i < edges.length; i++) {
+                versions[i] = edges[i].version;
+            }
+            this.rateTo = rateTo;
+            this.improvementsChecked = improvementsChecked;
+        }
+    }
+
+    public static void main(String[] args) {
+        List<Conversion> conversions = new ArrayList<>();
+        conversions.add(new Conversion("ETH", "USD", 5, 6));
+        conversions.add(new Conversion("ETH", "BTC", 2, 3));
+        conversions.add(new Conversion("BTC", "USD", 3, 4));
+        conversions.add(new Conversion("SOL", "XRP", 3, 4));
+        RouteCache cache = new RouteCache(conversions, 2);
+        assert cache.getBestRoute("ETH", "USD").rate == 6.0;
+        assert cache.getBestRoute("ETH", "USD").rate == 6.0;
+        assert cache.hits() == 1 && cache.misses() == 1;
+
+        // Worse rates off the path and any quote of another component keep the route
+        cache.update(new Conversion("ETH", "USD", 5, 7));
+        cache.update(new Conversion("SOL", "XRP", 5, 6));
+        assert cache.getBestRoute("ETH", "USD").rate == 6.0;
+        assert cache.hits() == 2 && cache.invalidations() == 0;
+
+        // A rate on the path changes
+        cache.update(new Conversion("BTC", "USD", 2, 4));
+        assert cache.getBestRoute("ETH", "USD").rate == 5.0;
+        assert cache.invalidations() == 1 && cache.misses() == 2;
+        assert cache.getBestRoute("ETH", "USD").currencies.equals(Arrays.asList("ETH", "USD"));
+
+        // A better rate off the path
+        cache.update(new Conversion("ETH", "BTC", 3, 4));
+        assert cache.getBestRoute("ETH", "USD").rate == 6.0;
+        assert cache.invalidations() == 2;
+
+        // A new product joining the components
+        cache.update(new Conversion("XRP", "USD", 10, 11));
+        assert cache.getBestRoute("ETH", "USD").rate == 6.0;
+        assert cache.invalidations() == 3;
+
+        // Better rates which cannot beat the route keep it, until one does
+        cache.update(new Conversion("ETH", "USD", 5.5, 6.5));
+        cache.update(new Conversion("ETH", "BTC", 3, 3.5));
+        assert cache.getBestRoute("ETH", "USD").rate == 6.0;
+        assert cache.invalidations() == 3;
+        cache.update(new Conversion("ETH", "USD", 6.5, 6.5));
+        assert cache.getBestRoute("ETH", "USD").rate == 6.5;
+        assert cache.invalidations() == 4;
+
+        // The least recently used route is evicted
+        cache.getBestRoute("USD", "ETH");
+        cache.getBestRoute("BTC", "ETH");
+        long missesBefore = cache.misses();
+        cache.getBestRoute("ETH", "USD");
+        assert cache.misses() == missesBefore + 1;
+
+        // Hot pairs queried between random quotes, checked against an uncached router fed the same quotes
+        Random random = new Random(42);
+        int currencyCount = 300;
+        double[] prices = new double[currencyCount];
+        for (int i = 0; i < currencyCount; i++) {
+            prices[i] = Math.exp(random.nextGaussian() * 3);
+        }
+        List<Conversion> market = new ArrayList<>();
+        for (int i = 1; i < currencyCount; i++) {
+            market.add(quote(i, random.nextInt(i), prices, random));
+        }
+        for (int i = 0; i < currencyCount / 2; i++) {
+            market.add(quote(random.nextInt(currencyCount), random.nextInt(currencyCount), prices, random));
+        }
+        CurrencyRouter router = new CurrencyRouter(market);
+        cache = new RouteCache(market, 64);
+        String[] hotPairs = new String[2 * 30];
+        for (int i = 0; i < hotPairs.length; i++) {
+            hotPairs[i] = "C" + random.nextInt(currencyCount);
+        }
+
+        int queries = 200_000;
+        long cachedNanos = 0;
+        long uncachedNanos = 0;
+        for (int i = 0; i < queries; i++) {
+            if (i % 100 == 0) {
+                // A quarter of the quotes raise the bid, the others worsen both rates of their product
+                Conversion old = market.get(random.nextInt(market.size()));
+                double factor = i % 400 == 0 ? 1.001 : 0.999;
+                Conversion conversion = new Conversion(old.currencyA, old.currencyB, old.bid * factor, old.ask / Math.min(factor, 0.999));
+                router.update(conversion);
+                cache.update(conversion);
+            }
+            int pair = random.nextInt(hotPairs.length / 2);
+            long start = System.nanoTime();
+            Route cached = cache.getBestRoute(hotPairs[2 * pair], hotPairs[2 * pair + 1]);
+            cachedNanos += System.nanoTime() - start;
+            if (i % 50 == 0) {
+                start = System.nanoTime();
+                Route uncached = router.getBestRoute(hotPairs[2 * pair], hotPairs[2 * pair + 1]);
+                uncachedNanos += (System.nanoTime() - start) * 50;
+                assert cached.rate == uncached.rate;
+            }
+        }
+        System.out.println(String.format("%d queries on %d hot pairs: hit ratio %.3f, %d invalidations, %d ns per query cached, about %d ns uncached",
+                queries, hotPairs.length / 2, cache.hits() / (double) (cache.hits() + cache.misses()), cache.invalidations(),
+                cachedNanos / queries, uncachedNanos / queries));
+
+        System.out.println("All tests passed.");
+    }
+
+    private static Conversion quote(int a, int b, double[] prices, Random random) {
+        double mid = prices[a] / prices[b];
+        double spread = 0.001 + random.nextDouble() * 0.01;
+        return new Conversion("C" + a, "C" + b, mid * (1 - spread), mid * (1 + spread));
+    }
+
+    public RouteCache(List<Conversion> conversions, int capacity) {
+        router = new CurrencyRouter(new ArrayList<>());
+        routes = new LinkedHashMap<String, CachedRoute>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedRoute> eldest) {
+                return size() > capacity;
+            }
+        };
+        for (Conversion conversion : conversions) {
+            update(conversion);
+        }
+    }
+
+    public Route getBestRoute(String fromCurrency, String toCurrency) {
+        String key = fromCurrency + "-" + toCurrency;
+        CachedRoute cached = routes.get(key);
+        if (cached != null) {
+            if (isValid(cached)) {
+                hits++;
+                return cached.route;
+            }
+            invalidations++;
+        }
+        misses++;
+
+        Route route = router.getBestRoute(fromCurrency, toCurrency);
+        EdgeVersion[] edges = new EdgeVersion[route.currencies.size() - 1];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = edgeVersions.get(route.currencies.get(i) + ">" + route.currencies.get(i + 1));
+        }
+        routes.put(key, new CachedRoute(route, edges, router.getConversionRatesTo(toCurrency), improvementCount));
+        return route;
+    }
+
+    /**
+     * Replaces the bid and ask of the conversion between currencyA and currencyB, adding it if it is new.
+     */
+    public void update(Conversion conversion) {
+        router.update(conversion);
+
+        String productId = conversion.currencyA + "-" + conversion.currencyB;
+        double[] quote = quotes.get(productId);
+        if (quote == null) {
+            // Both rates of a new product are better than none
+            quotes.put(productId, new double[] { conversion.bid, conversion.ask });
+            bumpVersion(conversion.currencyA, conversion.currencyB);
+            bumpVersion(conversion.currencyB, conversion.currencyA);
+            logImprovement(conversion.currencyA, conversion.currencyB, conversion.bid);
+            logImprovement(conversion.currencyB, conversion.currencyA, 1 / conversion.ask);
+            return;
+        }
+
+        // Selling at a higher bid, or buying back at a lower ask, is a better rate
+        if (conversion.bid != quote[0]) {
+            bumpVersion(conversion.currencyA, conversion.currencyB);
+        }
+        if (conversion.ask != quote[1]) {
+            bumpVersion(conversion.currencyB, conversion.currencyA);
+        }
+        if (conversion.bid > quote[0]) {
+            logImprovement(conversion.currencyA, conversion.currencyB, conversion.bid);
+        }
+        if (conversion.ask < quote[1]) {
+            logImprovement(conversion.currencyB, conversion.currencyA, 1 / conversion.ask);
+        }
+        quote[0] = conversion.bid;
+        quote[1] = conversion.ask;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * Number of cached routes found stale when read, each of which is also counted as a miss.
+     */
+    public long invalidations() {
+        return invalidations;
+    }
+
+    private boolean isValid(CachedRoute cached) {
+        for (int i = 0; i < cached.edges.length; i++) {
+            if (cached.edges[i].version != cached.versions[i]) {
+                return false;
+            }
+        }
+        if (improvementCount - cached.improvementsChecked > IMPROVEMENT_LOG_SIZE) {
+            return false;
+        }
+        // A path through several better rates can only beat the route if one of them improves the best rate from its
+        // currency to the target, and so can a profitable cycle closed by a better rate
+        for (long i = cached.improvementsChecked; i < improvementCount; i++) {
+            int entry = (int) (i & (IMPROVEMENT_LOG_SIZE - 1));
+            double before = rateTo(cached.rateTo, improvedFrom[entry]);
+            double through = improvedRate[entry] * rateTo(cached.rateTo, improvedTo[entry]);
+            if (!(through <= before)) {
+                return false;
+            }
+        }
+        cached.improvementsChecked = improvementCount;
+        return true;
+    }
+
+    /**
+     * Returns the rate of currency in rates, or 0 for a currency added after them which had no conversion then.
+     */
+    private static double rateTo(CurrencyRates rates, String currency) {
+        return rates.contains(currency) ? rates.getRate(currency) : 0;
+    }
+
+    private void logImprovement(String fromCurrency, String toCurrency, double rate) {
+        int entry = (int) (improvementCount++ & (IMPROVEMENT_LOG_SIZE - 1));
+        improvedFrom[entry] = fromCurrency;
+        improvedTo[entry] = toCurrency;
+        improvedRate[entry] = rate;
+    }
+
+    private void bumpVersion(String fromCurrency, String toCurrency) {
+        edgeVersions.computeIfAbsent(fromCurrency + ">" + toCurrency, edge -> new EdgeVersion()).version++;
+    }
+}
@@ -0,0 +1,335 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Keeps the last fetched Conversions in a file, so a process starts from them without calling the API.
+The file is binary: a table of the distinct currency codes, then each conversion as the indexes of its two currencies
+in the table, its bid and its ask. It is written to a temporary file moved over the old one, so a crash never leaves
+a half written cache. A missing or unreadable file is the same as an empty cache.
+Conversions older than refreshAfterMillis are still served while a single background thread fetches new ones. Once
+they are older than maxAgeMillis, getConversions waits for the refresh instead, so no data older than maxAgeMillis is
+ever served.
+
+Runtime Complexity:
+  * ConversionCache reads the file in O(|Conversions|)
+  * getConversions is O(1), unless it waits for a refresh
+  * a refresh is the cost of the loader, plus O(|Conversions|) to write the file
+Space Complexity: O(|Conversions|)*/
+
+package currencyconversion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+public class ConversionCache implements Closeable {
+    static final long DEFAULT_REFRESH_AFTER_MILLIS = 60_000;
+    static final long DEFAULT_MAX_AGE_MILLIS = 300_000;
+
+    // "CCV1", the format of the file
+    private static final int MAGIC = 0x43435631;
+    // Smallest sizes in the file of a currency code, its UTF length, and of a conversion, two indexes and two doubles
+    private static final int MIN_CURRENCY_BYTES = 2;
+    private static final int CONVERSION_BYTES = 24;
+    private final static Logger LOGGER = LoggerFactory.getLogger(ConversionCache.class.getName());
+
+    private final Path file;
+    private final Callable<List<Conversion>> loader;
+    private final long refreshAfterMillis;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+    private final ExecutorService refresher;
+
+    // null while nothing was fetched
+    private volatile Snapshot snapshot;
+    // Guarded by this
+    private Future<Snapshot> refresh;
+
+    private static final class Snapshot {
+        final List<Conversion> conversions;
+        final long fetchedAtMillis;
+
+        Snapshot(List<Conversion> conversions, long fetchedAtMillis) {
+            this.conversions = conversions;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path file = Files.createTempFile("conversions", ".bin");
+        Files.delete(file);
+        AtomicLong now = new AtomicLong(1_000_000);
+        AtomicInteger loads = new AtomicInteger();
+        List<Conversion> conversions = new ArrayList<>();
+        conversions.add(new Conversion("ETH", "USD", 5, 6));
+        conversions.add(new Conversion("ETH", "BTC", 2, 3));
+        conversions.add(new Conversion("BTC", "USD", 3, 4));
+        try {
+            // The first start waits for the API, and writes the file
+            try (ConversionCache cache = new ConversionCache(file, () -> {
+                loads.incrementAndGet();
+                return conversions;
+            }, 100, 1000, now::get)) {
+                assert cache.getConversions().size() == 3;
+                assert loads.get() == 1 && Files.exists(file);
+            }
+
+            // A restart reads the file without calling the API
+            now.addAndGet(50);
+            try (ConversionCache cache = new ConversionCache(file, () -> {
+                throw new IOException("The API must not be called.");
+            }, 100, 1000, now::get)) {
+                List<Conversion> cached = cache.getConversions();
+                assert cached.size() == 3;
+                Conversion conversion = cached.get(1);
+                assert conversion.currencyA.equals("ETH") && conversion.currencyB.equals("BTC");
+                assert conversion.bid == 2 && conversion.ask == 3;
+
+                // Past refreshAfterMillis the stale conversions keep being served while the refresh fails
+                now.addAndGet(500);
+                assert cache.getConversions() == cached;
+                // Past maxAgeMillis the failure is thrown
+                now.addAndGet(500);
+                try {
+                    cache.getConversions();
+                    assert false;
+                } catch (IOException e) {
+                    assert e.getCause().getMessage().equals("The API must not be called.");
+                }
+            }
+
+            // The stale conversions are served without waiting for the refresh
+            CountDownLatch release = new CountDownLatch(1);
+            List<Conversion> refreshed = new ArrayList<>(conversions);
+            refreshed.add(new Conversion("SOL", "USD", 7, 8));
+            try (ConversionCache cache = new ConversionCache(file, () -> {
+                release.await();
+                return refreshed;
+            }, 100, 10_000, now::get)) {
+                assert cache.getConversions().size() == 3;
+                release.countDown();
+                cache.startRefresh(null).get();
+                assert cache.getConversions().size() == 4;
+            }
+            assert read(file).conversions.size() == 4;
+
+            // An unreadable file is an empty cache
+            Files.write(file, new byte[] { 1, 2, 3 });
+            try (ConversionCache cache = new ConversionCache(file, () -> conversions, 100, 1000, now::get)) {
+                assert cache.getConversions().size() == 3;
+            }
+            // So is one whose counts are corrupted, without allocating them: the currency count is at 12, and the
+            // conversion count at 31, after the currencies ETH, USD and BTC
+            byte[] saved = Files.readAllBytes(file);
+            for (int[] corruption : new int[][] { { 12, Integer.MAX_VALUE }, { 12, -1 }, { 31, Integer.MAX_VALUE }, { 31, -1 } }) {
+                ByteBuffer corrupted = ByteBuffer.wrap(saved.clone());
+                corrupted.putInt(corruption[0], corruption[1]);
+                Files.write(file, corrupted.array());
+                try {
+                    read(file);
+                    assert false;
+                } catch (IOException e) {
+                    assert e.getMessage().contains("count");
+                }
+                try (ConversionCache cache = new ConversionCache(file, () -> conversions, 100, 1000, now::get)) {
+                    assert cache.getConversions().size() == 3;
+                }
+            }
+
+            // Startup time on a large market
+            List<Conversion> market = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                market.add(new Conversion("C" + i / 4, "C" + (i / 4 + i % 4 + 1), 1.5, 1.6));
+            }
+            write(file, new Snapshot(market, now.get()));
+            long start = System.nanoTime();
+            try (ConversionCache cache = new ConversionCache(file, () -> market, 60_000, 300_000, now::get)) {
+                assert cache.getConversions().size() == market.size();
+            }
+            System.out.println(String.format("%d conversions, %d bytes loaded in %d ms",
+                    market.size(), Files.size(file), (System.nanoTime() - start) / 1_000_000));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        System.out.println("All tests passed.");
+    }
+
+    public ConversionCache(Path file, Callable<List<Conversion>> loader, long refreshAfterMillis, long maxAgeMillis) {
+        this(file, loader, refreshAfterMillis, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    ConversionCache(Path file, Callable<List<Conversion>> loader, long refreshAfterMillis, long maxAgeMillis, LongSupplier clock) {
+        if (refreshAfterMillis < 0 || maxAgeMillis < refreshAfterMillis) {
+            throw new IllegalArgumentException("refreshAfterMillis must be between 0 and maxAgeMillis");
+        }
+        this.file = file;
+        this.loader = loader;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+        refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conversion-cache-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            snapshot = read(file);
+        } catch (NoSuchFileException e) {
+            snapshot = null;
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Could not read the cached conversions of %s.", file), e);
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Returns the last fetched conversions. Once they are older than refreshAfterMillis a refresh starts in the
+     * background while they keep being served, and once they are older than maxAgeMillis this waits for the refresh.
+     */
+    public List<Conversion> getConversions() throws IOException {
+        Snapshot current = snapshot;
+        long age = current == null ? Long.MAX_VALUE : clock.getAsLong() - current.fetchedAtMillis;
+        if (age < refreshAfterMillis) {
+            return current.conversions;
+        }
+        Future<Snapshot> pending = startRefresh(current);
+        if (age < maxAgeMillis) {
+            return current.conversions;
+        }
+        try {
+            return pending.get().conversions;
+        } catch (ExecutionException e) {
+            throw new IOException("Could not refresh the conversions.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while refreshing the conversions.");
+        }
+    }
+
+    /**
+     * Returns the refresh replacing stale, starting one unless it is running or already replaced stale.
+     */
+    synchronized Future<Snapshot> startRefresh(Snapshot stale) {
+        if (refresh == null || refresh.isDone() && snapshot == stale) {
+            refresh = refresher.submit(this::refresh);
+        }
+        return refresh;
+    }
+
+    private Snapshot refresh() throws Exception {
+        long fetchedAtMillis = clock.getAsLong();
+        Snapshot fetched;
+        try {
+            fetched = new Snapshot(Collections.unmodifiableList(new ArrayList<>(loader.call())), fetchedAtMillis);
+        } catch (Exception e) {
+            LOGGER.error("Could not refresh the conversions.", e);
+            throw e;
+        }
+        try {
+            write(file, fetched);
+        } catch (IOException e) {
+            LOGGER.error(String.format("Could not write the cached conversions to %s.", file), e);
+        }
+        snapshot = fetched;
+        return fetched;
+    }
+
+    static Snapshot read(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(String.format("%s is not a conversion cache.", file));
+            }
+            long fetchedAtMillis = input.readLong();
+            // Counts are checked against the size of the file before allocating, so a corrupted count cannot ask for
+            // more memory than the file could fill
+            long fileSize = Files.size(file);
+            String[] currencies = new String[readCount(input, fileSize / MIN_CURRENCY_BYTES, file)];
+            for (int i = 0; i < currencies.length; i++) {
+                currencies[i] = input.readUTF();
+            }
+            int size = readCount(input, fileSize / CONVERSION_BYTES, file);
+            List<Conversion> conversions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                String currencyA = currencies[input.readInt()];
+                String currencyB = currencies[input.readInt()];
+                conversions.add(new Conversion(currencyA, currencyB, input.readDouble(), input.readDouble()));
+            }
+            return new Snapshot(Collections.unmodifiableList(conversions), fetchedAtMillis);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException(String.format("%s is corrupted.", file), e);
+        }
+    }
+
+    private static int readCount(DataInputStream input, long max, Path file) throws IOException {
+        int count = input.readInt();
+        if (count < 0 || count > max) {
+            throw new IOException(String.format("%s is corrupted: count %d out of [0, %d].", file, count, max));
+        }
+        return count;
+    }
+
+    static void write(Path file, Snapshot snapshot) throws IOException {
+        HashMap<String, Integer> currencyIds = new HashMap<>();
+        List<String> currencies = new ArrayList<>();
+        for (Conversion conversion : snapshot.conversions) {
+            for (String currency : new String[] { conversion.currencyA, conversion.currencyB }) {
+                if (!currencyIds.containsKey(currency)) {
+                    currencyIds.put(currency, currencies.size());
+                    currencies.add(currency);
+                }
+            }
+        }
+
+        Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeInt(MAGIC);
+                output.writeLong(snapshot.fetchedAtMillis);
+                output.writeInt(currencies.size());
+                for (String currency : currencies) {
+                    output.writeUTF(currency);
+                }
+                output.writeInt(snapshot.conversions.size());
+                for (Conversion conversion : snapshot.conversions) {
+                    output.writeInt(currencyIds.get(conversion.currencyA));
+                    output.writeInt(currencyIds.get(conversion.currencyB));
+                    output.writeDouble(conversion.bid);
+                    output.writeDouble(conversion.ask);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+}
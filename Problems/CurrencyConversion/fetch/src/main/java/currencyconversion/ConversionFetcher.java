@@ -0,0 +1,397 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Fetches the products of the exchange and the top of their order books as Conversions. The book requests run
+concurrently on a fixed pool of maxConcurrency threads sharing one pooled HTTP client, so connections are kept alive
+and reused across requests. Instead of sleeping after every request, all the requests are paced by a TokenBucket
+set to the rate limit of the API. The base URL is configurable, so the fetcher can run against a local stub server.
+fetchOrderBooks fetches the aggregated depth of every book instead of its top, for DepthRouter.
+Responses are parsed by streaming over their tokens instead of building a tree: the top of a book is read from the
+first level of each side, and parsing stops as soon as both are read.
+
+Runtime Complexity: fetchConversions makes |Products| + 1 requests, with at most maxConcurrency in flight and at most
+burst + t * requestsPerSecond started in any t seconds. It takes about
+max(|Products| / requestsPerSecond, |Products| * latency / maxConcurrency), instead of |Products| * (latency + 500 ms).
+Space Complexity: O(|Products|)*/
+
+package currencyconversion;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConversionFetcher implements Closeable {
+    static final String DEFAULT_BASE_URL = "https://api.pro.coinbase.com";
+    static final int DEFAULT_MAX_CONCURRENCY = 8;
+    // Rate limit of the public endpoints of the API, per IP address
+    static final double DEFAULT_REQUESTS_PER_SECOND = 10;
+    static final int DEFAULT_BURST = 10;
+
+    private static final String PRODUCTS_PATH = "products";
+    private static final String BOOK_PATH_SUFFIX = "book";
+    // Level 2 aggregates the top 50 price levels of each side
+    private static final int AGGREGATED_LEVEL = 2;
+    private static final JsonFactory JSON = new JsonFactory();
+    private final static Logger LOGGER = LoggerFactory.getLogger(ConversionFetcher.class.getName());
+
+    private final String baseUrl;
+    private final CloseableHttpClient client;
+    private final ExecutorService executor;
+    private final TokenBucket pacer;
+
+    private interface BookReader<T> {
+        T read(String conversionID) throws IOException;
+    }
+
+    private interface ResponseParser<T> {
+        T parse(JsonParser parser) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // Stub of the products and book endpoints, counting the requests in flight
+        int productCount = 60;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        // Without TCP_NODELAY, the stub writing headers and body separately stalls every response on delayed ACKs
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.createContext("/" + PRODUCTS_PATH, exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                String[] path = exchange.getRequestURI().getPath().split("/");
+                int status = HttpStatus.SC_OK;
+                StringBuilder body = new StringBuilder();
+                if (path.length == 2) {
+                    body.append('[');
+                    for (int i = 0; i < productCount; i++) {
+                        body.append("{\"id\":\"C").append(i).append("-USD\"},");
+                    }
+                    body.append("{\"id\":\"BAD-USD\"}]");
+                } else if (path[2].equals("BAD-USD")) {
+                    status = HttpStatus.SC_INTERNAL_SERVER_ERROR;
+                    body.append("{}");
+                } else {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                    int i = Integer.parseInt(path[2].substring(1, path[2].indexOf('-')));
+                    // Concatenated rather than formatted, so the digits do not depend on the default locale
+                    body.append("{\"bids\":[[\"").append(i + 1).append(".5\",\"1\",1],[\"").append(i + 1).append("\",\"3\",2]],")
+                            .append("\"asks\":[[\"").append(i + 2).append("\",\"1\",1],[\"").append(i + 3).append("\",\"2\",1]]}");
+                }
+                byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+
+        String baseUrl = "http://localhost:" + server.getAddress().getPort();
+        double requestsPerSecond = 200;
+        int burst = 10;
+        try (ConversionFetcher fetcher = new ConversionFetcher(baseUrl, 4, new TokenBucket(requestsPerSecond, burst))) {
+            long start = System.nanoTime();
+            List<Conversion> conversions = fetcher.fetchConversions();
+            long elapsedNanos = System.nanoTime() - start;
+
+            // The book which failed is logged and left out
+            assert conversions.size() == productCount;
+            for (int i = 0; i < productCount; i++) {
+                Conversion conversion = conversions.get(i);
+                assert conversion.currencyA.equals("C" + i) && conversion.currencyB.equals("USD");
+                assert conversion.bid == i + 1.5 && conversion.ask == i + 2;
+            }
+            assert maxInFlight.get() <= 4;
+            // productCount + 2 requests, the first burst of which went through at once
+            assert elapsedNanos >= (productCount + 2 - burst) / requestsPerSecond * TimeUnit.SECONDS.toNanos(1);
+            System.out.println(String.format("%d books fetched in %d ms with at most %d requests in flight, %d s serially with a 500 ms sleep",
+                    conversions.size(), elapsedNanos / 1_000_000, maxInFlight.get(), (productCount + 1) / 2));
+
+            List<OrderBook> books = fetcher.fetchOrderBooks();
+            assert books.size() == productCount;
+            OrderBook book = books.get(7);
+            assert book.currencyA.equals("C7") && book.currencyB.equals("USD");
+            assert Arrays.equals(book.bidPrices, new double[] { 8.5, 8 }) && Arrays.equals(book.bidSizes, new double[] { 1, 3 });
+            assert Arrays.equals(book.askPrices, new double[] { 9, 10 }) && Arrays.equals(book.askSizes, new double[] { 1, 2 });
+        } finally {
+            server.stop(0);
+            serverExecutor.shutdown();
+        }
+
+        try {
+            parseTopOfBook(JSON.createParser("{\"bids\":[],\"asks\":[[\"1\",\"1\",1]]}"), "BTC-USD");
+            assert false;
+        } catch (IOException e) {
+            assert e.getMessage().equals("Order book of BTC-USD is empty.");
+        }
+        System.out.println("All tests passed.");
+    }
+
+    public ConversionFetcher() {
+        this(DEFAULT_BASE_URL, DEFAULT_MAX_CONCURRENCY, new TokenBucket(DEFAULT_REQUESTS_PER_SECOND, DEFAULT_BURST));
+    }
+
+    public ConversionFetcher(String baseUrl, int maxConcurrency, TokenBucket pacer) {
+        this.baseUrl = baseUrl;
+        this.pacer = pacer;
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConcurrency);
+        connectionManager.setDefaultMaxPerRoute(maxConcurrency);
+        client = HttpClients.custom().setConnectionManager(connectionManager).build();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "conversion-fetcher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the Conversions of every product, in the order the products are listed. Products whose book could not
+     * be fetched are logged and left out.
+     */
+    public List<Conversion> fetchConversions() throws IOException {
+        return fetchAll(this::fetchConversion);
+    }
+
+    /**
+     * Returns the aggregated order books of every product, up to the depth the API returns, in the order the products
+     * are listed. Products whose book could not be fetched are logged and left out.
+     */
+    public List<OrderBook> fetchOrderBooks() throws IOException {
+        return fetchAll(this::fetchOrderBook);
+    }
+
+    private <T> List<T> fetchAll(BookReader<T> reader) throws IOException {
+        List<String> conversionIDs = fetchConversionIDs();
+        List<Future<T>> books = new ArrayList<>();
+        for (String conversionID : conversionIDs) {
+            books.add(executor.submit(() -> reader.read(conversionID)));
+        }
+
+        List<T> results = new ArrayList<>();
+        for (int i = 0; i < books.size(); i++) {
+            try {
+                results.add(books.get(i).get());
+            } catch (ExecutionException e) {
+                LOGGER.error(String.format("API call to get Bid Ask spread for %s failed.", conversionIDs.get(i)), e.getCause());
+            } catch (InterruptedException e) {
+                for (Future<T> book : books) {
+                    book.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while fetching the order books.");
+            }
+        }
+        return results;
+    }
+
+    List<String> fetchConversionIDs() throws IOException {
+        return get(String.format("%s/%s", baseUrl, PRODUCTS_PATH), ConversionFetcher::parseConversionIDs);
+    }
+
+    Conversion fetchConversion(String conversionID) throws IOException {
+        return get(String.format("%s/%s/%s/%s", baseUrl, PRODUCTS_PATH, conversionID, BOOK_PATH_SUFFIX),
+                parser -> parseTopOfBook(parser, conversionID));
+    }
+
+    OrderBook fetchOrderBook(String conversionID) throws IOException {
+        return get(String.format("%s/%s/%s/%s?level=%d", baseUrl, PRODUCTS_PATH, conversionID, BOOK_PATH_SUFFIX, AGGREGATED_LEVEL),
+                parser -> parseOrderBook(parser, conversionID));
+    }
+
+    /**
+     * Reads the id of every product of a products response, skipping their other fields.
+     */
+    static List<String> parseConversionIDs(JsonParser parser) throws IOException {
+        List<String> conversionIDs = new ArrayList<>();
+        expect(parser.nextToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String conversionID = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("id")) {
+                    conversionID = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (conversionID == null) {
+                throw new IOException("Product without an id.");
+            }
+            conversionIDs.add(conversionID);
+        }
+        expect(parser.currentToken(), JsonToken.END_ARRAY);
+        return conversionIDs;
+    }
+
+    /**
+     * Reads the first bid and ask of a book response, and stops parsing as soon as it has both.
+     */
+    static Conversion parseTopOfBook(JsonParser parser, String conversionID) throws IOException {
+        double bid = Double.NaN;
+        double ask = Double.NaN;
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            boolean isBids = field.equals("bids");
+            if (parser.nextToken() != JsonToken.START_ARRAY || !isBids && !field.equals("asks")) {
+                parser.skipChildren();
+                continue;
+            }
+            // An empty side leaves the parser at the end of its levels
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                continue;
+            }
+            // Each level is [price, size, number of orders]
+            parser.nextToken();
+            if (isBids) {
+                bid = parser.getValueAsDouble(Double.NaN);
+            } else {
+                ask = parser.getValueAsDouble(Double.NaN);
+            }
+            if (!Double.isNaN(bid) && !Double.isNaN(ask)) {
+                break;
+            }
+            // The rest of the first level, then the other levels
+            skipToEndOfArray(parser);
+            skipToEndOfArray(parser);
+        }
+        if (Double.isNaN(bid) || Double.isNaN(ask)) {
+            throw new IOException(String.format("Order book of %s is empty.", conversionID));
+        }
+
+        String[] currencies = conversionID.split("-");
+        String currencyA = currencies[0];
+        String currencyB = currencies[1];
+        return new Conversion(currencyA, currencyB, bid, ask);
+    }
+
+    /**
+     * Reads every level of both sides of a book response.
+     */
+    static OrderBook parseOrderBook(JsonParser parser, String conversionID) throws IOException {
+        double[][] bids = null;
+        double[][] asks = null;
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && field.equals("bids")) {
+                bids = parseLevels(parser);
+            } else if (parser.currentToken() == JsonToken.START_ARRAY && field.equals("asks")) {
+                asks = parseLevels(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (bids == null || asks == null || bids[0].length == 0 || asks[0].length == 0) {
+            throw new IOException(String.format("Order book of %s is empty.", conversionID));
+        }
+
+        String[] currencies = conversionID.split("-");
+        return new OrderBook(currencies[0], currencies[1], bids[0], bids[1], asks[0], asks[1]);
+    }
+
+    /**
+     * Reads the levels array the parser is on into their prices and their sizes.
+     */
+    private static double[][] parseLevels(JsonParser parser) throws IOException {
+        double[] prices = new double[16];
+        double[] sizes = new double[16];
+        int size = 0;
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            if (size == prices.length) {
+                prices = Arrays.copyOf(prices, 2 * size);
+                sizes = Arrays.copyOf(sizes, 2 * size);
+            }
+            parser.nextToken();
+            prices[size] = parser.getValueAsDouble(Double.NaN);
+            parser.nextToken();
+            sizes[size++] = parser.getValueAsDouble(Double.NaN);
+            skipToEndOfArray(parser);
+        }
+        expect(parser.currentToken(), JsonToken.END_ARRAY);
+        return new double[][] { Arrays.copyOf(prices, size), Arrays.copyOf(sizes, size) };
+    }
+
+    private static void skipToEndOfArray(JsonParser parser) throws IOException {
+        for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token == null) {
+                throw new IOException("Unexpected end of the response.");
+            }
+            parser.skipChildren();
+        }
+    }
+
+    private static void expect(JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException(String.format("Expected %s in the response, found %s.", expected, token));
+        }
+    }
+
+    /**
+     * Waits for a token of the pacer, then parses the JSON response of url and releases its connection to the pool.
+     * Closing the parser closes the content stream, which drains the bytes left unparsed so the connection is reused.
+     */
+    private <T> T get(String url, ResponseParser<T> responseParser) throws IOException {
+        try {
+            pacer.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while waiting to call %s.", url));
+        }
+        try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status != HttpStatus.SC_OK) {
+                EntityUtils.consume(response.getEntity());
+                throw new IOException(String.format("GET %s returned status %d.", url, status));
+            }
+            try (JsonParser parser = JSON.createParser(response.getEntity().getContent())) {
+                return responseParser.parse(parser);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            client.close();
+        } catch (IOException e) {
+            LOGGER.error("Could not close the HTTP client.", e);
+        }
+    }
+}
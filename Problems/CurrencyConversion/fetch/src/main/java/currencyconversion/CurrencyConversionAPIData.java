@@ -1,34 +1,33 @@
 //Author: Tushar Jaiswal
 //Creation Date: 01/10/2021
 
-/*Runtime Complexity:
+/*By default the conversions come from a ConversionCache file, so a start only calls the API when the file is missing
+or older than its maximum age, and the graph is rebuilt whenever the cache refreshed them.
+
+Runtime Complexity:
+  * CurrencyConversionAPIData reads the cache in O(|Conversions|), or makes |Products| + 1 API calls through ConversionFetcher, concurrently and paced to the rate limit
   * createCurrencyGraph is O(|Conversions|)
   * getConversionRate is O(|Vertices| * |Edges|) as each neighbor of the Currency to be converted can start the traversal of the entire graph
 Space Complexity: O(|Vertices| + |Edges|) of the currency graph*/
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+package currencyconversion;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class CurrencyConversionAPIData {
-    private HashMap<String, List<Pair<String, Double>>> currencyGraph;
+    static final Path DEFAULT_CACHE_FILE = Paths.get(System.getProperty("java.io.tmpdir"), "currency-conversions.bin");
 
-    private static final String CONVERSIONS_LIST_ENDPOINT = "https://api.pro.coinbase.com/products";
-    private static final String CONVERSION_ENDPOINT_SUFFIX = "book";
-    private static final ObjectMapper MAPPER = new ObjectMapper();
-    private final static Logger LOGGER = LoggerFactory.getLogger(CurrencyConversionAPIData.class.getName());
+    private HashMap<String, List<Pair<String, Double>>> currencyGraph;
+    // null when the conversions were fetched once, without a cache
+    private final ConversionCache cache;
+    private List<Conversion> graphConversions;
 
     public static void main(String[] args) {
         CurrencyConversionAPIData currencyConversion = new CurrencyConversionAPIData();
@@ -42,8 +41,21 @@ public class CurrencyConversionAPIData {
     }
 
     public CurrencyConversionAPIData() {
-        List<Conversion> conversions = getConversionsList();
-        currencyGraph = createCurrencyGraph(conversions);
+        this(new ConversionCache(DEFAULT_CACHE_FILE, () -> {
+            try (ConversionFetcher fetcher = new ConversionFetcher()) {
+                return fetcher.fetchConversions();
+            }
+        }, ConversionCache.DEFAULT_REFRESH_AFTER_MILLIS, ConversionCache.DEFAULT_MAX_AGE_MILLIS));
+    }
+
+    public CurrencyConversionAPIData(ConversionFetcher fetcher) {
+        cache = null;
+        currencyGraph = createCurrencyGraph(getConversionsList(fetcher));
+    }
+
+    public CurrencyConversionAPIData(ConversionCache cache) {
+        this.cache = cache;
+        refreshCurrencyGraph();
     }
 
     HashMap<String, List<Pair<String, Double>>> createCurrencyGraph(List<Conversion> conversions) {
@@ -67,6 +79,9 @@ public class CurrencyConversionAPIData {
         if (fromCurrency.equals(toCurrency)) {
             return 1.0;
         }
+        if (cache != null) {
+            refreshCurrencyGraph();
+        }
 
         double bestRate = -1.0;
         HashSet<String> visitedNodes = new HashSet<>();
@@ -104,67 +119,27 @@ public class CurrencyConversionAPIData {
         return maxAmount;
     }
 
-    private List<Conversion> getConversionsList() {
-        List<String> conversionIDs;
+    /**
+     * Rebuilds the currency graph if the cache serves other conversions than the ones it was built from.
+     */
+    private void refreshCurrencyGraph() {
+        List<Conversion> conversions;
         try {
-            conversionIDs = getConversionIDs();
+            conversions = cache.getConversions();
         } catch (IOException e) {
-            throw new RuntimeException("Could not get Currency Conversion Data.");
+            throw new UncheckedIOException("Could not get Currency Conversion Data.", e);
         }
-
-        List<Conversion> conversions = new ArrayList<>();
-        for (String conversionID : conversionIDs) {
-            conversions.add(getConversion(conversionID));
-            try {
-                TimeUnit.MILLISECONDS.sleep(500);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        if (conversions != graphConversions) {
+            currencyGraph = createCurrencyGraph(conversions);
+            graphConversions = conversions;
         }
-
-        return conversions;
     }
 
-    private List<String> getConversionIDs() throws IOException {
-        List<String> conversionIDs = new ArrayList<>();
-
-        try (CloseableHttpClient client = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(CONVERSIONS_LIST_ENDPOINT);
-            CloseableHttpResponse response = client.execute(request);
-            JsonNode jsonNode = MAPPER.readTree(response.getEntity().getContent());
-
-            for (JsonNode conversion : jsonNode) {
-                conversionIDs.add(conversion.get("id").asText());
-            }
-        }
-
-        return conversionIDs;
-    }
-
-    private Conversion getConversion(String conversionID) {
-        Conversion conversion = null;
-
+    private List<Conversion> getConversionsList(ConversionFetcher fetcher) {
         try {
-            try (CloseableHttpClient client = HttpClients.createDefault()) {
-                String conversionEndpoint = String.format("%s/%s/%s", CONVERSIONS_LIST_ENDPOINT, conversionID, CONVERSION_ENDPOINT_SUFFIX);
-                HttpGet request = new HttpGet(conversionEndpoint);
-                CloseableHttpResponse response = client.execute(request);
-                JsonNode jsonNode = MAPPER.readTree(response.getEntity().getContent());
-
-                System.out.println(conversionID);
-
-                String[] currencies = conversionID.split("-");
-                String currencyA = currencies[0];
-                String currencyB = currencies[1];
-                double bid = jsonNode.get("bids").get(0).get(0).asDouble();
-                double ask = jsonNode.get("asks").get(0).get(0).asDouble();
-
-                conversion = new Conversion(currencyA, currencyB, bid, ask);
-            }
+            return fetcher.fetchConversions();
         } catch (IOException e) {
-            LOGGER.error(String.format("API call to get Bid Ask spread for %s failed.", conversionID));
+            throw new RuntimeException("Could not get Currency Conversion Data.");
         }
-
-        return conversion;
     }
 }
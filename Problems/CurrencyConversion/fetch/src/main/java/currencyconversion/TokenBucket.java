@@ -0,0 +1,41 @@
+//Author: Tushar Jaiswal
+//Creation Date: 10/19/2026
+
+/*Token bucket pacer shared by concurrent callers: up to burst calls go through at once, after which the calls are
+spaced 1 / tokensPerSecond apart. Instead of counting tokens, the bucket keeps the time at which the next call could
+go through if the bucket were empty (the theoretical arrival time of the generic cell rate algorithm). A call reserves
+its slot under the lock and sleeps outside of it, so waiting callers do not block each other.
+
+Runtime Complexity: acquire is O(1), plus the time spent waiting for its slot
+Space Complexity: O(1)*/
+
+package currencyconversion;
+
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private long theoreticalArrivalNanos = Long.MIN_VALUE;
+
+    public TokenBucket(double tokensPerSecond, int burst) {
+        if (!(tokensPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("tokensPerSecond must be positive and burst at least 1");
+        }
+        nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        burstNanos = (burst - 1) * nanosPerToken;
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long arrival = Math.max(theoreticalArrivalNanos, now);
+            waitNanos = arrival - now - burstNanos;
+            theoreticalArrivalNanos = arrival + nanosPerToken;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
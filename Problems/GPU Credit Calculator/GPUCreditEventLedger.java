@@ -0,0 +1,508 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+// Event sourced ledger for GPUCredit, taking addCredit and useCredit calls in any order of their timestamps.
+// The calls are kept as events in a log sorted by timestamp, adds before uses at the same timestamp, then by arrival.
+// The balance at t is the one of replaying the log up to t: useCredit burns the credits active at its timestamp oldest
+// first, or nothing if they do not hold enough, like GPUCredit, and uses after t do not count.
+// Each event applied leaves a version of a persistent segment tree over time, holding the remaining amounts of the
+// credits at their endTime, so getBalance(t) picks the version of the last event up to t and sums the credits ending
+// from t on. An event arriving late is inserted in the log, the events after it undone newest first from what they
+// recorded while applied, then replayed with it. Events arriving in order replay nothing.
+// With a lateness, calls may arrive at most lateness behind the latest timestamp seen: the watermark follows the latest
+// timestamp at that distance, and calls and balances before it are rejected. Events before the watermark are then
+// final, so once they outnumber the rest of the log and the credits left, the ledger compacts: it undoes the later
+// events, rebuilds the tree from the credits left at that point as its base version, drops the older events and
+// replays the later ones over the base.
+
+/*
+Runtime Complexity:
+  * getBalance is O(log n + log T), for n the number of events and T the range of the timestamps
+  * addCredit and useCredit are O(n + (s + k) * (log T + log n)), for s the events logged after it and k the credits
+    these burn or see expire; the O(n) is the shift of the array of the log, and is only paid by late events
+  * compaction is O((n + c) * log T) for c the credits left, amortized O(log T) over the events it drops
+Space Complexity: O((n + k) * log T), for k the credits burnt by all events. With a lateness, n and k only count the
+events since the last compaction, which are fewer than twice the events within the lateness plus the credits left.
+*/
+
+import java.util.*;
+
+public class GPUCreditEventLedger {
+    private static class Credit {
+        String creditId;
+        int remaining;
+        long startTime;
+        long endTime;
+        long arrival;
+
+        Credit(String creditId, int amount, long startTime, long endTime, long arrival) {
+            this.creditId = creditId;
+            this.remaining = amount;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.arrival = arrival;
+        }
+    }
+
+    private static final int ADD = 0;
+    private static final int USE = 1;
+
+    private static class Event {
+        long time;
+        int kind;
+        long arrival;
+        Credit credit; // ADD
+        int amount; // USE
+        // What applying the event did, so it can be undone
+        int root;
+        int nodeCount;
+        List<Credit> expired = new ArrayList<>();
+        List<Credit> burntCredits = new ArrayList<>();
+        List<Integer> burntAmounts = new ArrayList<>();
+
+        Event(long time, int kind, long arrival) {
+            this.time = time;
+            this.kind = kind;
+            this.arrival = arrival;
+        }
+    }
+
+    // Sums of amounts keyed by time over [MIN_TIME, MAX_TIME], persistent: add copies the path to the key, leaving the
+    // tree of the previous root unchanged. Node 0 is the empty tree, and nodes are allocated in order, so the nodes of
+    // the versions after some version are dropped by resetting nodeCount to what it was then.
+    static class VersionedTimeSumTree {
+        // startTime + expiration of two ints always fits
+        static final long MIN_TIME = -(1L << 33);
+        static final long MAX_TIME = 1L << 33;
+
+        private int[] left = new int[64];
+        private int[] right = new int[64];
+        private long[] sum = new long[64];
+        int nodeCount = 1;
+
+        int add(int root, long time, long amount) {
+            int newRoot = copy(root);
+            int node = newRoot;
+            long low = MIN_TIME;
+            long high = MAX_TIME;
+            while (true) {
+                sum[node] += amount;
+                if (low == high) {
+                    return newRoot;
+                }
+                long middle = (low + high) >> 1;
+                if (time <= middle) {
+                    int child = copy(left[node]); // May grow the arrays, so not assigned in one statement
+                    left[node] = child;
+                    node = child;
+                    high = middle;
+                } else {
+                    int child = copy(right[node]);
+                    right[node] = child;
+                    node = child;
+                    low = middle + 1;
+                }
+            }
+        }
+
+        // Sum of the amounts at times >= time in the tree of root
+        long suffixSum(int root, long time) {
+            long total = 0;
+            int node = root;
+            long low = MIN_TIME;
+            long high = MAX_TIME;
+            while (node != 0) {
+                if (time <= low) {
+                    return total + sum[node];
+                }
+                long middle = (low + high) >> 1;
+                if (time <= middle) {
+                    total += sum[right[node]];
+                    node = left[node];
+                    high = middle;
+                } else {
+                    node = right[node];
+                    low = middle + 1;
+                }
+            }
+            return total;
+        }
+
+        private int copy(int node) {
+            if (nodeCount == sum.length) {
+                left = Arrays.copyOf(left, nodeCount * 2);
+                right = Arrays.copyOf(right, nodeCount * 2);
+                sum = Arrays.copyOf(sum, nodeCount * 2);
+            }
+            left[nodeCount] = left[node];
+            right[nodeCount] = right[node];
+            sum[nodeCount] = sum[node];
+            return nodeCount++;
+        }
+    }
+
+    private static final Comparator<Event> LOG_ORDER = Comparator.<Event>comparingLong(e -> e.time)
+            .thenComparingInt(e -> e.kind).thenComparingLong(e -> e.arrival);
+
+    private static final int MIN_COMPACTION = 64;
+
+    private final List<Event> log = new ArrayList<>();
+    private VersionedTimeSumTree tree = new VersionedTimeSumTree();
+    // Version of the tree holding the credits left at the last compaction, the events of the log start from it
+    private int baseRoot;
+    private int baseNodeCount = 1;
+    // Credits added by the last event applied with some amount left and not seen expired, oldest first and by expiry
+    private final TreeSet<Credit> byStart = new TreeSet<>(Comparator.<Credit>comparingLong(c -> c.startTime).thenComparingLong(c -> c.arrival));
+    private final TreeSet<Credit> byExpiry = new TreeSet<>(Comparator.<Credit>comparingLong(c -> c.endTime).thenComparingLong(c -> c.arrival));
+    private long nextArrival;
+    private long appliedEvents;
+    private final long lateness;
+    private long watermark = VersionedTimeSumTree.MIN_TIME;
+
+    // Takes calls in any order of their timestamps, and keeps every event
+    public GPUCreditEventLedger() {
+        this.lateness = Long.MAX_VALUE;
+    }
+
+    // Takes calls at most lateness behind the latest timestamp seen, and drops the events before that
+    public GPUCreditEventLedger(int lateness) {
+        if (lateness < 0) {
+            throw new IllegalArgumentException("lateness must be non-negative");
+        }
+        this.lateness = lateness;
+    }
+
+    // Calls and balances before the watermark are rejected, the uses before it will not be replayed anymore
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public void addCredit(String creditId, int amount, int timestamp, int expiration) {
+        // A credit ending before it starts would be subtracted from the balances of the others
+        if (amount <= 0 || expiration < 0) {
+            throw new IllegalArgumentException(String.format("Credit %s must have a positive amount and a non-negative expiration", creditId));
+        }
+        Event event = new Event(timestamp, ADD, nextArrival);
+        event.credit = new Credit(creditId, amount, timestamp, (long) timestamp + expiration, nextArrival++);
+        insert(event);
+    }
+
+    // Returns whether the use burnt its amount in the log as of now; an earlier use arriving later may take the credit
+    // first, and the replay then leaves this one burning nothing, until the watermark passes timestamp
+    public boolean useCredit(int timestamp, int amount) {
+        Event event = new Event(timestamp, USE, nextArrival++);
+        event.amount = amount;
+        insert(event);
+        return !event.burntCredits.isEmpty();
+    }
+
+    public Integer getBalance(int timestamp) {
+        checkWatermark(timestamp);
+        int events = eventsUpTo(timestamp);
+        long total = tree.suffixSum(events == 0 ? baseRoot : log.get(events - 1).root, timestamp);
+        return total > 0 ? (int) total : null;
+    }
+
+    // Number of events of the log at or before time
+    private int eventsUpTo(long time) {
+        int low = 0;
+        int high = log.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (log.get(middle).time <= time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void checkWatermark(long time) {
+        if (time < watermark) {
+            throw new IllegalArgumentException(String.format("Timestamp %d is before the watermark %d", time, watermark));
+        }
+    }
+
+    private void insert(Event event) {
+        checkWatermark(event.time);
+        int position = log.size();
+        while (position > 0 && LOG_ORDER.compare(log.get(position - 1), event) > 0) {
+            position--;
+        }
+        if (position < log.size()) {
+            for (int i = log.size() - 1; i >= position; i--) {
+                undo(log.get(i));
+            }
+            tree.nodeCount = position == 0 ? baseNodeCount : log.get(position - 1).nodeCount;
+        }
+        log.add(position, event);
+        replayFrom(position);
+
+        if (event.time - watermark > lateness) {
+            watermark = event.time - lateness;
+            compact();
+        }
+    }
+
+    private void replayFrom(int position) {
+        for (int i = position; i < log.size(); i++) {
+            apply(log.get(i), i == 0 ? baseRoot : log.get(i - 1).root);
+        }
+    }
+
+    // Drops the events before the watermark once rebuilding the rest costs less than what it drops
+    private void compact() {
+        int dropped = eventsUpTo(watermark - 1);
+        if (dropped < MIN_COMPACTION || dropped < log.size() - dropped + byStart.size()) {
+            return;
+        }
+        // Back to the state right after the events to drop
+        for (int i = log.size() - 1; i >= dropped; i--) {
+            undo(log.get(i));
+        }
+        // No call can use or count the credits expired before the watermark anymore
+        while (!byExpiry.isEmpty() && byExpiry.first().endTime < watermark) {
+            byStart.remove(byExpiry.pollFirst());
+        }
+        tree = new VersionedTimeSumTree();
+        baseRoot = 0;
+        for (Credit credit : byStart) {
+            baseRoot = tree.add(baseRoot, credit.endTime, credit.remaining);
+        }
+        baseNodeCount = tree.nodeCount;
+        log.subList(0, dropped).clear();
+        replayFrom(0);
+    }
+
+    private void apply(Event event, int root) {
+        appliedEvents++;
+        if (event.kind == ADD) {
+            Credit credit = event.credit;
+            byStart.add(credit);
+            byExpiry.add(credit);
+            root = tree.add(root, credit.endTime, credit.remaining);
+        } else {
+            // Every credit logged before started by now, so the active ones are those not expired
+            while (!byExpiry.isEmpty() && byExpiry.first().endTime < event.time) {
+                Credit credit = byExpiry.pollFirst();
+                byStart.remove(credit);
+                event.expired.add(credit);
+            }
+            if (tree.suffixSum(root, event.time) >= event.amount) {
+                int remaining = event.amount;
+                while (remaining > 0) {
+                    Credit credit = byStart.first();
+                    int burnt = Math.min(credit.remaining, remaining);
+                    credit.remaining -= burnt;
+                    remaining -= burnt;
+                    root = tree.add(root, credit.endTime, -burnt);
+                    event.burntCredits.add(credit);
+                    event.burntAmounts.add(burnt);
+                    if (credit.remaining == 0) {
+                        byStart.remove(credit);
+                        byExpiry.remove(credit);
+                    }
+                }
+            }
+        }
+        event.root = root;
+        event.nodeCount = tree.nodeCount;
+    }
+
+    private void undo(Event event) {
+        if (event.kind == ADD) {
+            byStart.remove(event.credit);
+            byExpiry.remove(event.credit);
+            return;
+        }
+        for (int i = event.burntCredits.size() - 1; i >= 0; i--) {
+            Credit credit = event.burntCredits.get(i);
+            if (credit.remaining == 0) {
+                byStart.add(credit);
+                byExpiry.add(credit);
+            }
+            credit.remaining += event.burntAmounts.get(i);
+        }
+        for (Credit credit : event.expired) {
+            byStart.add(credit);
+            byExpiry.add(credit);
+        }
+        event.expired.clear();
+        event.burntCredits.clear();
+        event.burntAmounts.clear();
+    }
+
+    // Balance at queried of the calls in order of the log, replaying them all from scratch
+    private static int replayBalance(List<int[]> calls, int queried) {
+        List<int[]> sorted = new ArrayList<>(calls);
+        sorted.sort(Comparator.<int[]>comparingInt(c -> c[1]).thenComparingInt(c -> c[0]).thenComparingInt(c -> c[4]));
+        List<int[]> credits = new ArrayList<>(); // {startTime, endTime, remaining}
+        for (int[] call : sorted) { // {kind, timestamp, amount, expiration, arrival}
+            if (call[1] > queried) {
+                break;
+            }
+            if (call[0] == ADD) {
+                credits.add(new int[] { call[1], call[1] + call[3], call[2] });
+                continue;
+            }
+            int available = 0;
+            for (int[] credit : credits) {
+                available += credit[1] >= call[1] ? credit[2] : 0;
+            }
+            int amount = call[2];
+            for (int i = 0; i < credits.size() && available >= call[2]; i++) {
+                int[] credit = credits.get(i);
+                if (credit[1] >= call[1]) {
+                    int burnt = Math.min(credit[2], amount);
+                    credit[2] -= burnt;
+                    amount -= burnt;
+                }
+            }
+        }
+        int balance = 0;
+        for (int[] credit : credits) {
+            balance += credit[1] >= queried ? credit[2] : 0;
+        }
+        return balance;
+    }
+
+    public static void main(String[] args) {
+        // Example 2 of GPUCredit, in order then with the calls reversed
+        GPUCreditEventLedger ledger1 = new GPUCreditEventLedger();
+        ledger1.addCredit("amazon", 40, 10, 50);
+        assert ledger1.useCredit(30, 30);
+        ledger1.addCredit("google", 20, 60, 10);
+        assert ledger1.appliedEvents == 3;
+        assert ledger1.getBalance(30) == 10;
+        GPUCreditEventLedger ledger2 = new GPUCreditEventLedger();
+        ledger2.addCredit("google", 20, 60, 10);
+        assert !ledger2.useCredit(30, 30);
+        assert ledger2.getBalance(30) == null;
+        ledger2.addCredit("amazon", 40, 10, 50);
+        // The use is replayed after the late add, and burns it this time
+        assert ledger2.appliedEvents == 6;
+        for (GPUCreditEventLedger ledger : new GPUCreditEventLedger[] { ledger1, ledger2 }) {
+            assert ledger.getBalance(9) == null;
+            assert ledger.getBalance(29) == 40;
+            assert ledger.getBalance(40) == 10;
+            assert ledger.getBalance(60) == 30;
+            assert ledger.getBalance(61) == 20;
+            assert ledger.getBalance(71) == null;
+        }
+
+        // A late use only changes the balances from its timestamp on
+        assert ledger1.useCredit(20, 15);
+        assert ledger1.getBalance(19) == 40;
+        assert ledger1.getBalance(20) == 25;
+        // So the use at 30 now finds too little and burns nothing
+        assert ledger1.getBalance(30) == 25;
+
+        // Random calls arriving late by up to 20 positions against replaying the calls from scratch
+        Random random = new Random(42);
+        List<int[]> calls = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            int kind = random.nextInt(2);
+            calls.add(new int[] { kind, i / 2 + random.nextInt(10), 1 + random.nextInt(kind == ADD ? 100 : 150), random.nextInt(50), i });
+        }
+        for (int i = 0; i < calls.size(); i++) {
+            Collections.swap(calls, i, Math.min(calls.size() - 1, i + random.nextInt(20)));
+            calls.get(i)[4] = i;
+        }
+        GPUCreditEventLedger ledger = new GPUCreditEventLedger();
+        for (int i = 0; i < calls.size(); i++) {
+            int[] call = calls.get(i);
+            if (call[0] == ADD) {
+                ledger.addCredit("credit" + i, call[2], call[1], call[3]);
+            } else {
+                ledger.useCredit(call[1], call[2]);
+            }
+            if (i % 50 == 0 || i == calls.size() - 1) {
+                List<int[]> arrived = calls.subList(0, i + 1);
+                for (int queried = -5; queried < 1_020; queried += 1 + random.nextInt(10)) {
+                    int expected = replayBalance(arrived, queried);
+                    Integer balance = ledger.getBalance(queried);
+                    assert expected == 0 ? balance == null : balance == expected;
+                }
+            }
+        }
+
+        // 100k calls, 1% of them arriving late by up to 100 positions
+        int events = 100_000;
+        calls = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            int kind = i % 2;
+            calls.add(new int[] { kind, i, kind == ADD ? 10 : 7, 1_000, i });
+        }
+        for (int i = 0; i < events; i++) {
+            if (random.nextInt(100) == 0) {
+                Collections.swap(calls, i, Math.min(events - 1, i + random.nextInt(100)));
+            }
+        }
+        ledger = new GPUCreditEventLedger();
+        long start = System.nanoTime();
+        for (int[] call : calls) {
+            if (call[0] == ADD) {
+                ledger.addCredit("grant" + call[4], call[2], call[1], call[3]);
+            } else {
+                ledger.useCredit(call[1], call[2]);
+            }
+        }
+        long checksum = 0;
+        for (int i = 0; i < events; i++) {
+            Integer balance = ledger.getBalance(i);
+            checksum += balance == null ? 0 : balance;
+        }
+        assert checksum > 0;
+        System.out.println(String.format("%d calls applied in %d events, then %d getBalance calls in %d ms",
+                events, ledger.appliedEvents, events, (System.nanoTime() - start) / 1_000_000));
+
+        // The same calls with the lateness of the latest of them: same balances from the watermark on, and the log and
+        // tree only hold the events since the last compaction
+        int lateness = 0;
+        int latest = 0;
+        for (int[] call : calls) {
+            latest = Math.max(latest, call[1]);
+            lateness = Math.max(lateness, latest - call[1]);
+        }
+        GPUCreditEventLedger windowed = new GPUCreditEventLedger(lateness);
+        int maxLogSize = 0;
+        for (int[] call : calls) {
+            if (call[0] == ADD) {
+                windowed.addCredit("grant" + call[4], call[2], call[1], call[3]);
+            } else {
+                windowed.useCredit(call[1], call[2]);
+            }
+            maxLogSize = Math.max(maxLogSize, windowed.log.size());
+        }
+        assert windowed.getWatermark() == events - 1 - lateness;
+        for (int i = (int) windowed.getWatermark(); i < events + 1_000; i++) {
+            assert Objects.equals(windowed.getBalance(i), ledger.getBalance(i));
+        }
+        assert maxLogSize < 4 * lateness + 2 * MIN_COMPACTION : maxLogSize;
+        assert windowed.tree.nodeCount < ledger.tree.nodeCount / 10;
+        try {
+            windowed.useCredit(events - 2 - lateness, 1);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals(String.format("Timestamp %d is before the watermark %d",
+                    events - 2 - lateness, events - 1 - lateness));
+        }
+        try {
+            windowed.getBalance(0);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        for (int[] invalid : new int[][] { { 0, 10 }, { -5, 10 }, { 5, -1 } }) {
+            try {
+                windowed.addCredit("invalid", invalid[0], events, invalid[1]);
+                assert false;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+
+        System.out.println("All test cases passed.");
+    }
+}
@@ -0,0 +1,361 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+// Ledger engine for GPUCredit with the same addCredit, getBalance and useCredit, without scanning every credit per call.
+// A credit adds its remaining amount to the balance at every t in [startTime, endTime], so
+//     balance(t) = (remaining of the credits with startTime <= t) - (remaining of the credits with endTime < t)
+// as a credit which ended before t also started before t. Both sums are prefix sums over time, kept in segment trees
+// whose nodes are created on first use, so a balance at any timestamp is two O(log T) queries.
+// useCredit burns the credits active at its timestamp in the order of the ConsumptionPolicy of the ledger, insertion
+// order by default like GPUCredit. The credits not started yet wait in a heap by startTime, the started ones are indexed
+// in a TreeSet ordered by the policy, and their expiries kept in a heap by endTime to drop them from the index once
+// expired. Timestamps of useCredit must not decrease, as GPUCredit assumes.
+
+/*
+Runtime Complexity:
+  * addCredit is O(log T + log n), for T the range of the timestamps and n the number of credits
+  * getBalance is O(log T)
+  * useCredit is O(log T + (k + e) * (log T + log n)), for k credits burnt and e credits expired since the last useCredit
+Space Complexity: O(n * log T)
+*/
+
+import java.util.*;
+
+public class GPUCreditLedger {
+    private static class Credit {
+        String creditId;
+        int remaining;
+        long startTime;
+        long endTime;
+        long sequence;
+
+        Credit(String creditId, int amount, long startTime, long endTime, long sequence) {
+            this.creditId = creditId;
+            this.remaining = amount;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.sequence = sequence;
+        }
+    }
+
+    // Sums of amounts keyed by time, as a segment tree over [MIN_TIME, MAX_TIME] whose nodes are created on first use.
+    // Node 0 is the root, so a child index of 0 means the child was never created.
+    static class TimeSumTree {
+        // startTime + expiration of two ints always fits
+        static final long MIN_TIME = -(1L << 33);
+        static final long MAX_TIME = 1L << 33;
+
+        private int[] left = new int[64];
+        private int[] right = new int[64];
+        private long[] sum = new long[64];
+        private int nodeCount = 1;
+
+        void add(long time, long amount) {
+            int node = 0;
+            long low = MIN_TIME;
+            long high = MAX_TIME;
+            while (true) {
+                sum[node] += amount;
+                if (low == high) {
+                    return;
+                }
+                long middle = (low + high) >> 1;
+                if (time <= middle) {
+                    if (left[node] == 0) {
+                        int child = newNode(); // May grow the arrays, so not assigned in one statement
+                        left[node] = child;
+                    }
+                    node = left[node];
+                    high = middle;
+                } else {
+                    if (right[node] == 0) {
+                        int child = newNode(); // May grow the arrays, so not assigned in one statement
+                        right[node] = child;
+                    }
+                    node = right[node];
+                    low = middle + 1;
+                }
+            }
+        }
+
+        // Sum of the amounts at times <= time
+        long prefixSum(long time) {
+            long total = 0;
+            int node = 0;
+            long low = MIN_TIME;
+            long high = MAX_TIME;
+            while (true) {
+                if (time >= high) {
+                    return total + sum[node];
+                }
+                long middle = (low + high) >> 1;
+                if (time <= middle) {
+                    node = left[node];
+                    high = middle;
+                } else {
+                    if (left[node] != 0) {
+                        total += sum[left[node]];
+                    }
+                    node = right[node];
+                    low = middle + 1;
+                }
+                if (node == 0) {
+                    return total;
+                }
+            }
+        }
+
+        private int newNode() {
+            if (nodeCount == sum.length) {
+                left = Arrays.copyOf(left, nodeCount * 2);
+                right = Arrays.copyOf(right, nodeCount * 2);
+                sum = Arrays.copyOf(sum, nodeCount * 2);
+            }
+            return nodeCount++;
+        }
+    }
+
+    // Order in which useCredit burns the active credits, ties broken by insertion order
+    public enum ConsumptionPolicy {
+        INSERTION_ORDER(Comparator.comparingLong(c -> c.sequence)),
+        // Burns the credit expiring soonest first, so fewer credits expire unused
+        EARLIEST_EXPIRY(Comparator.<Credit>comparingLong(c -> c.endTime).thenComparingLong(c -> c.sequence)),
+        // Burns the smallest remaining amount first, so fewer credits are left partly burnt
+        SMALLEST_FIRST(Comparator.<Credit>comparingInt(c -> c.remaining).thenComparingLong(c -> c.sequence));
+
+        private final Comparator<Credit> order;
+
+        ConsumptionPolicy(Comparator<Credit> order) {
+            this.order = order;
+        }
+    }
+
+    private final TimeSumTree remainingByStart = new TimeSumTree();
+    private final TimeSumTree remainingByEnd = new TimeSumTree();
+    private final PriorityQueue<Credit> notStarted = new PriorityQueue<>(Comparator.comparingLong(c -> c.startTime));
+    private final TreeSet<Credit> started;
+    private final PriorityQueue<Credit> expiries = new PriorityQueue<>(Comparator.comparingLong(c -> c.endTime));
+    private long nextSequence;
+    private long lastUseTime = Long.MIN_VALUE;
+
+    public GPUCreditLedger() {
+        this(ConsumptionPolicy.INSERTION_ORDER);
+    }
+
+    public GPUCreditLedger(ConsumptionPolicy policy) {
+        started = new TreeSet<>(policy.order);
+    }
+
+    public void addCredit(String creditId, int amount, int timestamp, int expiration) {
+        // A credit ending before it starts would be subtracted from the balances of the others
+        if (amount <= 0 || expiration < 0) {
+            throw new IllegalArgumentException(String.format("Credit %s must have a positive amount and a non-negative expiration", creditId));
+        }
+        Credit credit = new Credit(creditId, amount, timestamp, (long) timestamp + expiration, nextSequence++);
+        remainingByStart.add(credit.startTime, amount);
+        remainingByEnd.add(credit.endTime, amount);
+        notStarted.add(credit);
+    }
+
+    public Integer getBalance(int timestamp) {
+        long total = balanceAt(timestamp);
+        return total > 0 ? (int) total : null;
+    }
+
+    // Burns amount from the credits active at timestamp, or nothing if they do not hold it; returns whether it burnt
+    public boolean useCredit(int timestamp, int amount) {
+        if (timestamp < lastUseTime) {
+            throw new IllegalArgumentException(String.format("useCredit at %d after useCredit at %d", timestamp, lastUseTime));
+        }
+        lastUseTime = timestamp;
+        if (balanceAt(timestamp) < amount) {
+            return false; // Not enough credit, do nothing
+        }
+
+        advanceTo(timestamp);
+        int remaining = amount;
+        while (remaining > 0) {
+            // Taken out while burnt, as the policy may order by the remaining amount
+            Credit credit = started.pollFirst();
+            int burnt = Math.min(credit.remaining, remaining);
+            burn(credit, burnt);
+            remaining -= burnt;
+            if (credit.remaining > 0) {
+                started.add(credit);
+            }
+        }
+        return true;
+    }
+
+    private long balanceAt(long timestamp) {
+        return remainingByStart.prefixSum(timestamp) - remainingByEnd.prefixSum(timestamp - 1);
+    }
+
+    // Indexes the credits started by timestamp and drops the ones expired before it, leaving the active ones indexed
+    private void advanceTo(long timestamp) {
+        while (!notStarted.isEmpty() && notStarted.peek().startTime <= timestamp) {
+            Credit credit = notStarted.poll();
+            started.add(credit);
+            expiries.add(credit);
+        }
+        while (!expiries.isEmpty() && expiries.peek().endTime < timestamp) {
+            Credit credit = expiries.poll();
+            if (credit.remaining > 0) { // Burnt credits already left, and may no longer be found by the policy order
+                started.remove(credit);
+            }
+        }
+    }
+
+    private void burn(Credit credit, int amount) {
+        credit.remaining -= amount;
+        remainingByStart.add(credit.startTime, -amount);
+        remainingByEnd.add(credit.endTime, -amount);
+    }
+
+    public static void main(String[] args) {
+        // Example 1
+        GPUCreditLedger ledger1 = new GPUCreditLedger();
+        ledger1.addCredit("microsoft", 10, 10, 30);
+        assert ledger1.getBalance(0) == null;
+        assert ledger1.getBalance(10) == 10;
+        assert ledger1.getBalance(40) == 10;
+        assert ledger1.getBalance(41) == null;
+
+        // Example 2
+        GPUCreditLedger ledger2 = new GPUCreditLedger();
+        ledger2.addCredit("amazon", 40, 10, 50);
+        ledger2.useCredit(30, 30);
+        assert ledger2.getBalance(40) == 10;
+        ledger2.addCredit("google", 20, 60, 10);
+        assert ledger2.getBalance(60) == 30;
+        assert ledger2.getBalance(61) == 20;
+        assert ledger2.getBalance(70) == 20;
+        assert ledger2.getBalance(71) == null;
+
+        // Not enough credit at the timestamp, the credit not started yet does not count
+        ledger2.addCredit("meta", 50, 100, 10);
+        assert !ledger2.useCredit(70, 25);
+        assert ledger2.getBalance(70) == 20;
+        // Burns the older credit first
+        ledger2.addCredit("oracle", 5, 105, 100);
+        ledger2.useCredit(105, 52);
+        assert ledger2.getBalance(105) == 3;
+        assert ledger2.getBalance(111) == 3;
+
+        // Invalid credits are rejected, and leave the balances of the others unchanged
+        GPUCreditLedger ledger4 = new GPUCreditLedger();
+        ledger4.addCredit("a", 10, 0, 100);
+        for (int[] invalid : new int[][] { { 10, -5 }, { 0, 5 }, { -10, 5 } }) {
+            try {
+                ledger4.addCredit("b", invalid[0], 10, invalid[1]);
+                assert false;
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        assert ledger4.getBalance(7) == 10;
+
+        // Random calls in time order against a scan of every credit, as GPUCredit does
+        Random random = new Random(42);
+        GPUCreditLedger ledger = new GPUCreditLedger();
+        List<int[]> credits = new ArrayList<>(); // {startTime, endTime, remaining}
+        int time = 0;
+        for (int call = 0; call < 20_000; call++) {
+            time += random.nextInt(3);
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                int start = time + random.nextInt(20);
+                int expiration = random.nextInt(50);
+                int amount = 1 + random.nextInt(100);
+                ledger.addCredit("credit" + call, amount, start, expiration);
+                credits.add(new int[] { start, start + expiration, amount });
+            } else if (operation == 1) {
+                int amount = 1 + random.nextInt(200);
+                ledger.useCredit(time, amount);
+                int available = 0;
+                for (int[] credit : credits) {
+                    available += credit[0] <= time && time <= credit[1] ? credit[2] : 0;
+                }
+                for (int i = 0; i < credits.size() && available >= amount; i++) {
+                    int[] credit = credits.get(i);
+                    if (credit[0] <= time && time <= credit[1]) {
+                        int burnt = Math.min(credit[2], amount);
+                        credit[2] -= burnt;
+                        amount -= burnt;
+                    }
+                }
+            } else {
+                int queried = time + random.nextInt(40) - 20;
+                int expected = 0;
+                for (int[] credit : credits) {
+                    expected += credit[0] <= queried && queried <= credit[1] ? credit[2] : 0;
+                }
+                Integer balance = ledger.getBalance(queried);
+                assert expected == 0 ? balance == null : balance == expected;
+            }
+        }
+
+        // Policies: a long lived grant, then one expiring soon, then a small one
+        for (ConsumptionPolicy policy : ConsumptionPolicy.values()) {
+            GPUCreditLedger ledger3 = new GPUCreditLedger(policy);
+            ledger3.addCredit("yearly", 100, 0, 365);
+            ledger3.addCredit("trial", 30, 0, 7);
+            ledger3.addCredit("refund", 5, 0, 30);
+            ledger3.useCredit(1, 40);
+            assert ledger3.getBalance(1) == 95;
+            // Burning the yearly grant first leaves the trial to expire unused
+            assert ledger3.getBalance(8) == (policy == ConsumptionPolicy.INSERTION_ORDER ? 65 : 95);
+        }
+
+        // Every policy conserves credit: what was added is what remains plus what was burnt, and a useCredit burns all
+        // of its amount or nothing
+        for (ConsumptionPolicy policy : ConsumptionPolicy.values()) {
+            random = new Random(7);
+            ledger = new GPUCreditLedger(policy);
+            long added = 0;
+            long burnt = 0;
+            time = 0;
+            for (int call = 0; call < 20_000; call++) {
+                time += random.nextInt(3);
+                if (random.nextBoolean()) {
+                    int amount = 1 + random.nextInt(100);
+                    ledger.addCredit("credit" + call, amount, time + random.nextInt(20), random.nextInt(50));
+                    added += amount;
+                } else {
+                    int amount = 1 + random.nextInt(200);
+                    long before = ledger.balanceAt(time);
+                    ledger.useCredit(time, amount);
+                    long after = ledger.balanceAt(time);
+                    assert before < amount ? after == before : after == before - amount;
+                    burnt += before - after;
+                }
+                assert ledger.remainingByStart.prefixSum(TimeSumTree.MAX_TIME) == added - burnt;
+                assert ledger.remainingByEnd.prefixSum(TimeSumTree.MAX_TIME) == added - burnt;
+            }
+            for (Credit credit : ledger.notStarted) {
+                assert credit.remaining > 0;
+            }
+            for (Credit credit : ledger.expiries) {
+                assert credit.remaining >= 0;
+            }
+        }
+
+        // 100k grants on one account
+        int grants = 100_000;
+        ledger = new GPUCreditLedger();
+        long start = System.nanoTime();
+        for (int i = 0; i < grants; i++) {
+            ledger.addCredit("grant" + i, 10, i, 1_000_000);
+        }
+        long checksum = 0;
+        for (int i = 0; i < grants; i++) {
+            ledger.useCredit(grants + i, 7);
+            checksum += ledger.getBalance(grants + i);
+        }
+        assert checksum > 0;
+        System.out.println(String.format("%d grants, then %d useCredit and getBalance calls in %d ms",
+                grants, grants, (System.nanoTime() - start) / 1_000_000));
+
+        System.out.println("All test cases passed.");
+    }
+}
@@ -0,0 +1,239 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+// GPU credit service for many accounts, called by many threads. Each account has its own GPUCreditEventLedger, created
+// on its first addCredit, and calls on an account hold the lock of its stripe: the account id hashes to one of a fixed
+// power of two of locks, so calls on accounts of different stripes run in parallel without a lock per account.
+// useCredit checks the balance and burns under the same lock, so it burns all of its amount or nothing even when
+// threads use the same credits at once. Schedulers may take the lock in any order of their timestamps, up to the
+// lateness of the service: a report for an earlier timestamp than one already taken is replayed before it, as the event
+// ledger does, and may then take the credit the later report had burnt, which then burns nothing. Balances are always
+// those of the reports in time order. Each account has a watermark, lateness behind its latest report: reports and
+// balances before it are rejected, so a useCredit which returned true is final once the watermark of its account
+// passes its timestamp, and the ledger drops the events before the watermark instead of growing for ever.
+
+/*
+Runtime Complexity: those of GPUCreditEventLedger, plus O(1) to find the ledger and its lock
+Space Complexity: O(a + s) plus the ledgers, for a accounts and s stripes
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+public class GPUCreditService {
+    public static final int DEFAULT_STRIPES = 1024;
+    public static final int DEFAULT_LATENESS = 3_600;
+
+    private final ConcurrentHashMap<String, GPUCreditEventLedger> ledgers = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks;
+    private final int lateness;
+
+    public GPUCreditService() {
+        this(DEFAULT_STRIPES, DEFAULT_LATENESS);
+    }
+
+    public GPUCreditService(int stripes, int lateness) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a power of two");
+        }
+        if (lateness < 0) {
+            throw new IllegalArgumentException("lateness must be non-negative");
+        }
+        this.lateness = lateness;
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public void addCredit(String accountId, String creditId, int amount, int timestamp, int expiration) {
+        GPUCreditEventLedger ledger = ledgers.computeIfAbsent(accountId, id -> new GPUCreditEventLedger(lateness));
+        Lock lock = lockOf(accountId);
+        lock.lock();
+        try {
+            ledger.addCredit(creditId, amount, timestamp, expiration);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Integer getBalance(String accountId, int timestamp) {
+        GPUCreditEventLedger ledger = ledgers.get(accountId);
+        if (ledger == null) {
+            return null;
+        }
+        Lock lock = lockOf(accountId);
+        lock.lock();
+        try {
+            return ledger.getBalance(timestamp);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns whether the account held amount at timestamp and it was burnt, as of the reports taken so far. This is
+    // final once getWatermark of the account passes timestamp
+    public boolean useCredit(String accountId, int timestamp, int amount) {
+        GPUCreditEventLedger ledger = ledgers.get(accountId);
+        if (ledger == null) {
+            return false;
+        }
+        Lock lock = lockOf(accountId);
+        lock.lock();
+        try {
+            return ledger.useCredit(timestamp, amount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Timestamp before which the reports of the account are final, and new ones rejected
+    public Long getWatermark(String accountId) {
+        GPUCreditEventLedger ledger = ledgers.get(accountId);
+        if (ledger == null) {
+            return null;
+        }
+        Lock lock = lockOf(accountId);
+        lock.lock();
+        try {
+            return ledger.getWatermark();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lock lockOf(String accountId) {
+        int hash = accountId.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (locks.length - 1)];
+    }
+
+    // Runs body(thread) on threadCount threads started together, returning the milliseconds until all finished
+    private static long runThreads(int threadCount, IntConsumer body) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(threadCount);
+        CountDownLatch go = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                body.accept(thread);
+            });
+            threads[i].start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private interface IntConsumer {
+        void accept(int value);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        GPUCreditService service = new GPUCreditService();
+        service.addCredit("acme", "amazon", 40, 10, 50);
+        assert service.useCredit("acme", 30, 30);
+        assert service.getBalance("acme", 40) == 10;
+        assert service.getBalance("globex", 40) == null;
+        assert !service.useCredit("globex", 40, 1);
+        assert !service.useCredit("acme", 40, 11);
+        assert service.getBalance("acme", 40) == 10;
+
+        // Reports arriving in any order of their timestamps within the lateness
+        service = new GPUCreditService(DEFAULT_STRIPES, 50);
+        service.addCredit("initech", "trial", 10, 0, 1_000);
+        assert service.useCredit("initech", 101, 1);
+        assert service.useCredit("initech", 100, 1);
+        assert service.getBalance("initech", 100) == 9;
+        assert service.getBalance("initech", 101) == 8;
+        assert service.getWatermark("initech") == 51;
+        assert service.useCredit("initech", 300, 8);
+        assert service.getWatermark("initech") == 250;
+        // Too late to be replayed before the report at 300, whose credit stays burnt
+        try {
+            service.useCredit("initech", 200, 5);
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Timestamp 200 is before the watermark 250");
+        }
+        assert service.getBalance("initech", 300) == null;
+        assert service.getWatermark("globex") == null;
+
+        // Threads burning the same few accounts, each report at its own timestamp, taken in whatever order the threads
+        // race to: the accounts end as the reports replayed in time order, each burnt whole or not at all
+        int accounts = 8;
+        int threadCount = 16;
+        int reportsPerThread = 5_000;
+        service = new GPUCreditService(4, threadCount * reportsPerThread);
+        for (int account = 0; account < accounts; account++) {
+            service.addCredit("account" + account, "grant", 30_000, 0, 1_000_000);
+        }
+        GPUCreditService shared = service;
+        int[][] reportAccount = new int[threadCount * reportsPerThread][];
+        runThreads(threadCount, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < reportsPerThread; i++) {
+                int timestamp = i * threadCount + thread;
+                int account = random.nextInt(accounts);
+                int amount = 1 + random.nextInt(7);
+                reportAccount[timestamp] = new int[] { account, amount };
+                shared.useCredit("account" + account, timestamp, amount);
+            }
+        });
+        int[] expected = new int[accounts];
+        Arrays.fill(expected, 30_000);
+        for (int[] report : reportAccount) { // In time order
+            if (expected[report[0]] >= report[1]) {
+                expected[report[0]] -= report[1];
+            }
+        }
+        for (int account = 0; account < accounts; account++) {
+            Integer balance = service.getBalance("account" + account, reportAccount.length);
+            assert (balance == null ? 0 : balance) == expected[account];
+            // 80k reports of 4 on average drain every account below the largest amount
+            assert expected[account] < 7;
+        }
+
+        // Throughput on 200k accounts, each call a useCredit at a random timestamp within the lateness, so some arrive
+        // late, or a getBalance on a random account. Every thread count starts from fresh accounts and shares the same
+        // calls.
+        int accountCount = 200_000;
+        int callsPerRound = 400_000;
+        for (int round = 0; round <= 7; round++) {
+            int threads = round == 0 ? 1 : 1 << (round - 1); // Round 0 warms up
+            GPUCreditService loaded = new GPUCreditService(DEFAULT_STRIPES, 1_000);
+            for (int account = 0; account < accountCount; account++) {
+                loaded.addCredit("account" + account, "grant", 1_000_000, 0, 1_000_000);
+            }
+            int callsPerThread = callsPerRound / threads;
+            long milliseconds = runThreads(threads, thread -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < callsPerThread; i++) {
+                    String accountId = "account" + random.nextInt(accountCount);
+                    if ((i & 1) == 0) {
+                        loaded.useCredit(accountId, 100 + random.nextInt(1_000), 1);
+                    } else {
+                        loaded.getBalance(accountId, 1_100);
+                    }
+                }
+            });
+            if (round > 0) {
+                System.out.println(String.format("%2d threads: %,d calls per second", threads,
+                        (long) threads * callsPerThread * 1_000 / Math.max(1, milliseconds)));
+            }
+        }
+
+        System.out.println("All test cases passed.");
+    }
+}
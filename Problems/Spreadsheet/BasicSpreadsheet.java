@@ -32,12 +32,22 @@
 //  * O(n) space will be required for the Excel Form itself. 
 //  * For each cell in this form, the cells_where_in_formula list can contain O(n) cells.
 
-public class Spreadsheet {
+import java.util.*;
+
+public class BasicSpreadsheet {
     HashMap<String, Cell> graph;
+    private RecalcListener recalcListener;
+    private long cellsTouched;
+    private long edgesWalked;
+    private int maxDepth;
     
-    public Spreadsheet() {
+    public BasicSpreadsheet() {
         graph = new HashMap<String, Cell>();
     }
+
+    public void setRecalcListener(RecalcListener recalcListener) {
+        this.recalcListener = recalcListener;
+    }
     
     public int get(String key) {
         if (!graph.containsKey(key)) {
@@ -63,7 +73,12 @@ public class Spreadsheet {
         
         var visited = new HashSet<String>();
         visited.add(key);
-        updateCellsWhereInFormula(cell, oldVal, newVal);
+        long start = System.nanoTime();
+        cellsTouched = 0;
+        edgesWalked = 0;
+        maxDepth = 0;
+        updateCellsWhereInFormula(cell, oldVal, newVal, 1);
+        notifyRecalcListener(key, start);
     }
     
     public void set(String key, String child1, String child2) {
@@ -91,20 +106,34 @@ public class Spreadsheet {
         int newVal = get(child1) + get(child2);
         cell.val = newVal;
         
-        updateCellsWhereInFormula(cell, oldVal, newVal);
+        long start = System.nanoTime();
+        cellsTouched = 0;
+        edgesWalked = 0;
+        maxDepth = 0;
+        updateCellsWhereInFormula(cell, oldVal, newVal, 1);
+        notifyRecalcListener(key, start);
     }
     
-    private void updateCellsWhereInFormula(Cell cell, int oldVal, int newVal) {
+    private void updateCellsWhereInFormula(Cell cell, int oldVal, int newVal, int depth) {
         for (String dependentCellKey : cell.cellsWhereInFormula) {
+            edgesWalked++;
             Cell dependentCell = graph.get(dependentCellKey);
             int dependentOldVal = dependentCell.val;
             dependentCell.val -= oldVal;
             dependentCell.val += newVal;
             int dependentNewVal = dependentCell.val;
-            updateCellsWhereInFormula(dependentCell, dependentOldVal, dependentNewVal);
+            cellsTouched++;
+            maxDepth = Math.max(maxDepth, depth);
+            updateCellsWhereInFormula(dependentCell, dependentOldVal, dependentNewVal, depth + 1);
         }
     }
     
+    private void notifyRecalcListener(String key, long start) {
+        if (recalcListener != null) {
+            recalcListener.onRecalc(new RecalcStats(key, cellsTouched, edgesWalked, maxDepth, System.nanoTime() - start));
+        }
+    }
+
     private void removeDependencyOfCell(Cell cell) {
         graph.get(cell.child1).cellsWhereInFormula.remove(cell.key);
         graph.get(cell.child2).cellsWhereInFormula.remove(cell.key);
@@ -113,7 +142,7 @@ public class Spreadsheet {
     }
     
     public static void main(String[] args) {
-        Spreadsheet spreadsheet = new Spreadsheet();
+        BasicSpreadsheet spreadsheet = new BasicSpreadsheet();
     
         spreadsheet.set("a", 1);
         spreadsheet.set("b", 5);
@@ -136,17 +165,17 @@ public class Spreadsheet {
 
         System.out.println("All tests passed.");
     }
-}
 
-class Cell {
-    String key;
-    int val;
-    String child1;
-    String child2;
-    HashSet<String> cellsWhereInFormula;
+    private static class Cell {
+        String key;
+        int val;
+        String child1;
+        String child2;
+        HashSet<String> cellsWhereInFormula;
     
-    public Cell(String key) {
-        this.key = key;
-        cellsWhereInFormula = new HashSet<String>();
+        public Cell(String key) {
+            this.key = key;
+            cellsWhereInFormula = new HashSet<String>();
+        }
     }
 }
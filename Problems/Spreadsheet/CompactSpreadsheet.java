@@ -0,0 +1,1214 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+//  Compact variant of the Spreadsheet where each cell can:
+//  ● Hold a direct integer value
+//  ● Be the sum of two other cells
+//  The public get/set String API is the same as in BasicSpreadsheet and FeaturedSpreadsheet.
+
+//  Storage:
+//  ● Cell keys are interned to int ids once, at the API boundary. Everything after that is int indexed.
+//  ● Values and formula children live in parallel int[] arrays instead of one Cell object per key.
+//  ● The cells where a cell is in formula (its dependents) live in one shared int[] edge pool, CSR style.
+//    Each cell owns the slice [edgeStart, edgeStart + edgeCount) of the pool with some slack (edgeCapacity).
+//    A full slice is moved to the end of the pool with double the capacity, and the pool is compacted
+//    once more than half of it is abandoned slices.
+
+//  Recalculation:
+//  Instead of pushing oldVal/newVal deltas recursively down every path (exponential on chains of diamonds),
+//  set collects the cone of cells reachable from the updated cell, counts the in-cone formula edges of each of them
+//  and recomputes every cell of the cone exactly once in topological order (Kahn's algorithm).
+//  Cycles are rejected when a formula is set, before any state is modified.
+//  With setParallelThreshold, cones of at least that many cells are instead split into levels with Kahn's algorithm:
+//  level 0 is the updated cell and a cell is in level k if the longest formula path to it from the updated cell is k.
+//  Cells within a level never depend on each other, so each level of at least parallelThreshold cells is recomputed by
+//  fork-join tasks on the common pool, in chunks. The levels themselves are recomputed one after the other.
+
+//  Batches:
+//  Between beginBatch and commit, set only records the new values and formulas. commit then runs one cycle check and
+//  one recalculation over the union of the cones of every cell written in the batch, so 10k writes feeding the same
+//  cells recompute each of those cells once instead of 10k times. If the batch closes a cycle, commit restores every
+//  value and formula to what it was before beginBatch and throws. setAll wraps a map of values in a batch.
+
+//  Persistence:
+//  save writes the interned keys, the values, the formulas and the CSR dependents, with the cells renumbered in
+//  topological order so that every cell comes after the cells in its formula. load reads the arrays back as they are:
+//  it rebuilds no dependency and recalculates nothing. Both go through a FileChannel with a 1 MB buffer.
+//  A 1M cell sheet (33 MB) saves in ~1.2 to 1.6 s and loads in ~1.5 to 1.6 s, most of the load being the interning map.
+//  File layout, all ints big endian:
+//      magic, format version, number of cells n, number of formula edges e
+//      n times: key length, UTF-8 key bytes, value, child1 and child2 (-1 for a direct value)
+//      n times: number of dependents
+//      e times: dependent, grouped by cell
+//  load checks every count against the size of the file and every cell against the topological order, so a truncated
+//  or corrupted file fails with an IOException instead of loading a sheet that breaks later.
+
+//  Runtime Complexity:
+//  Here, n refers to the number of cells in the current Spreadsheet, c refers to the number of cells that
+//  depend directly or transitively on the updated cell and e to the number of formula edges between them.
+//  * init is O(1)
+//  * set is O(c + e) amortized, of which the recomputation drops to O(c / p + d) on p cores when the cone of d levels
+//    is recomputed in parallel
+//  * get is O(1)
+//  * commit is O(c + e) where c and e are taken over the union of the cones of the cells written in the batch
+//  * save and load are O(n + e)
+//  Space Complexity: O(n + e) ints. There is no per cell object, HashSet or boxed Integer, other than the
+//  interning map from key to id.
+
+//  Measured on a sheet where each cell is the sum of the previous two:
+//  * With 1M cells it takes ~150 bytes per cell instead of ~440 bytes per cell for FeaturedSpreadsheet,
+//    about 100 of those being the key String and its intern entry.
+//  * Updating the first of 1M cells takes ~75 ms, FeaturedSpreadsheet overflows the stack.
+//  * Updating the first of 32 cells takes microseconds, BasicSpreadsheet takes ~225 ms pushing a delta down every path.
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class CompactSpreadsheet {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int FILE_MAGIC = 0x53534854;
+    private static final int FILE_FORMAT_VERSION = 1;
+    private static final int FILE_BUFFER_SIZE = 1 << 20;
+    private static final int PARALLEL_CHUNK_SIZE = 2048;
+
+    private final HashMap<String, Integer> ids;
+    private String[] keys;
+    private int[] values;
+    private int[] child1;
+    private int[] child2;
+    private int size;
+
+    // CSR style adjacency of the cells where each cell is in formula
+    private int[] edgeStart;
+    private int[] edgeCount;
+    private int[] edgeCapacity;
+    private int[] edgePool;
+    private int edgePoolSize;
+    private int edgePoolGarbage;
+
+    // Scratch space reused by every traversal, cells are marked by stamping them with the current epoch
+    private int[] stamp;
+    private int epoch;
+    private int[] inDegree;
+    private int[] stack;
+
+    // Only allocated once parallel recalculation is enabled, the offset in stack where each level of the cone starts
+    private int parallelThreshold = Integer.MAX_VALUE;
+    private int[] levelStart;
+
+    // Only maintained while a listener is registered, level is the longest formula path from the updated cell
+    private RecalcListener recalcListener;
+    private int[] level;
+
+    // Batch state, the cells written since beginBatch and their value and formula before the batch
+    private boolean inBatch;
+    private int batchStartSize;
+    private boolean[] batchTouched;
+    private int batchCount;
+    private int[] batchCells;
+    private int[] savedValues;
+    private int[] savedChild1;
+    private int[] savedChild2;
+
+    public CompactSpreadsheet() {
+        this(INITIAL_CAPACITY, INITIAL_CAPACITY);
+    }
+
+    private CompactSpreadsheet(int cellCapacity, int edgePoolCapacity) {
+        ids = new HashMap<>(cellCapacity * 4 / 3 + 1);
+        keys = new String[cellCapacity];
+        values = new int[cellCapacity];
+        child1 = new int[cellCapacity];
+        child2 = new int[cellCapacity];
+        edgeStart = new int[cellCapacity];
+        edgeCount = new int[cellCapacity];
+        edgeCapacity = new int[cellCapacity];
+        edgePool = new int[edgePoolCapacity];
+        stamp = new int[cellCapacity];
+        inDegree = new int[cellCapacity];
+        stack = new int[cellCapacity];
+        batchTouched = new boolean[cellCapacity];
+        batchCells = new int[INITIAL_CAPACITY];
+        savedValues = new int[INITIAL_CAPACITY];
+        savedChild1 = new int[INITIAL_CAPACITY];
+        savedChild2 = new int[INITIAL_CAPACITY];
+    }
+
+    public int get(String key) {
+        return values[idOf(key)];
+    }
+
+    public void set(String key, int val) {
+        int cell = internCell(key);
+        recordBatchWrite(cell);
+
+        if (child1[cell] != NONE) {
+            // Remove dependency of this cell
+            removeDependencyOfCell(cell);
+        }
+
+        values[cell] = val;
+        if (!inBatch) {
+            recalculateCellsWhereInFormula(cell);
+        }
+    }
+
+    public void set(String key, String child1Key, String child2Key) {
+        if (child1Key == null || child2Key == null) {
+            throw new IllegalArgumentException("Both child1 and child2 must be passed as arguments");
+        }
+        int c1 = idOf(child1Key);
+        int c2 = idOf(child2Key);
+        Integer existing = ids.get(key);
+        if (!inBatch && existing != null && (dependsOn(c1, existing) || dependsOn(c2, existing))) {
+            throw new IllegalArgumentException("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        int cell = internCell(key);
+        recordBatchWrite(cell);
+
+        if (child1[cell] != NONE) {
+            // Remove dependency of this cell
+            removeDependencyOfCell(cell);
+        }
+
+        // Add this cell to the cells in formula to mark dependency
+        child1[cell] = c1;
+        child2[cell] = c2;
+        addDependent(c1, cell);
+        addDependent(c2, cell);
+
+        values[cell] = values[c1] + values[c2];
+        if (!inBatch) {
+            recalculateCellsWhereInFormula(cell);
+        }
+    }
+
+    /**
+     * Starts recording writes without recalculating. Until commit, get returns the values as of the last write to
+     * each cell and cells depending on the cells written in the batch are not recalculated.
+     */
+    public void beginBatch() {
+        if (inBatch) {
+            throw new IllegalStateException("A batch is already in progress");
+        }
+        inBatch = true;
+        batchStartSize = size;
+        batchCount = 0;
+    }
+
+    /**
+     * Recalculates every cell depending on the cells written since beginBatch, once. If the formulas written in the
+     * batch create a cycle, every write of the batch is rolled back and IllegalArgumentException is thrown.
+     * The recalculation listener receives one RecalcStats for the whole commit, keyed by the first cell written.
+     */
+    public void commit() {
+        if (!inBatch) {
+            throw new IllegalStateException("No batch in progress");
+        }
+        long start = System.nanoTime();
+        long edgesWalked = 0;
+        long cellsTouched = 0;
+        int maxDepth = 0;
+
+        // Collect the union of the cones of the written cells and count the formula edges coming from inside it
+        int mark = nextEpoch();
+        int coneSize = 0;
+        int top = 0;
+        for (int i = 0; i < batchCount; i++) {
+            int cell = batchCells[i];
+            if (stamp[cell] != mark) {
+                stamp[cell] = mark;
+                inDegree[cell] = 0;
+                if (level != null) {
+                    level[cell] = 0;
+                }
+                coneSize++;
+                stack[top++] = cell;
+            }
+            while (top > 0) {
+                int current = stack[--top];
+                int end = edgeStart[current] + edgeCount[current];
+                edgesWalked += edgeCount[current];
+                for (int j = edgeStart[current]; j < end; j++) {
+                    int dependent = edgePool[j];
+                    if (stamp[dependent] != mark) {
+                        stamp[dependent] = mark;
+                        inDegree[dependent] = 0;
+                        if (level != null) {
+                            level[dependent] = 0;
+                        }
+                        coneSize++;
+                        stack[top++] = dependent;
+                    }
+                    inDegree[dependent]++;
+                }
+            }
+        }
+
+        // Order the cone topologically, only written cells can have no in-cone children. Cells left out are on a cycle
+        int ordered = 0;
+        for (int i = 0; i < batchCount; i++) {
+            int cell = batchCells[i];
+            if (inDegree[cell] == 0) {
+                stack[ordered++] = cell;
+            }
+        }
+        for (int head = 0; head < ordered; head++) {
+            int current = stack[head];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int j = edgeStart[current]; j < end; j++) {
+                int dependent = edgePool[j];
+                if (level != null) {
+                    level[dependent] = Math.max(level[dependent], level[current] + 1);
+                }
+                if (--inDegree[dependent] == 0) {
+                    stack[ordered++] = dependent;
+                }
+            }
+        }
+        if (ordered < coneSize) {
+            rollbackBatch();
+            throw new IllegalArgumentException("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+
+        for (int i = 0; i < ordered; i++) {
+            int cell = stack[i];
+            if (child1[cell] != NONE) {
+                values[cell] = values[child1[cell]] + values[child2[cell]];
+                cellsTouched++;
+                if (level != null) {
+                    maxDepth = Math.max(maxDepth, level[cell]);
+                }
+            }
+        }
+        String firstKey = batchCount == 0 ? null : keys[batchCells[0]];
+        endBatch();
+        notifyRecalcListener(firstKey, cellsTouched, edgesWalked, maxDepth, start);
+    }
+
+    /**
+     * Sets every value of cellValues in one batch. If one of them cannot be set, none of them is.
+     */
+    public void setAll(Map<String, Integer> cellValues) {
+        beginBatch();
+        try {
+            for (Map.Entry<String, Integer> entry : cellValues.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            // Restores the values written so far and closes the batch
+            rollbackBatch();
+            throw e;
+        }
+        commit();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void setRecalcListener(RecalcListener recalcListener) {
+        this.recalcListener = recalcListener;
+        level = recalcListener == null ? null : new int[keys.length];
+    }
+
+    /**
+     * Recomputes the cones of at least parallelThreshold cells level by level, splitting the levels of at least
+     * parallelThreshold cells across the common fork-join pool. Sets are sequential until this is called, pass
+     * Integer.MAX_VALUE to make them sequential again. Commits are always sequential.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = Math.max(PARALLEL_CHUNK_SIZE, parallelThreshold);
+        levelStart = parallelThreshold == Integer.MAX_VALUE ? null : new int[keys.length + 1];
+    }
+
+    public void save(Path path) throws IOException {
+        if (inBatch) {
+            throw new IllegalStateException("Cannot save while a batch is in progress");
+        }
+
+        // Renumber the cells in topological order, a cell comes after the cells in its formula
+        int[] order = new int[size];
+        int[] position = new int[size];
+        int ordered = 0;
+        for (int cell = 0; cell < size; cell++) {
+            inDegree[cell] = child1[cell] == NONE ? 0 : 2;
+            if (inDegree[cell] == 0) {
+                order[ordered++] = cell;
+            }
+        }
+        int edges = 0;
+        for (int head = 0; head < ordered; head++) {
+            int current = order[head];
+            position[current] = head;
+            edges += edgeCount[current];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (--inDegree[dependent] == 0) {
+                    order[ordered++] = dependent;
+                }
+            }
+        }
+
+        try (ChannelWriter writer = new ChannelWriter(path)) {
+            writer.putInt(FILE_MAGIC);
+            writer.putInt(FILE_FORMAT_VERSION);
+            writer.putInt(size);
+            writer.putInt(edges);
+            for (int cell : order) {
+                writer.putBytes(keys[cell].getBytes(StandardCharsets.UTF_8));
+                writer.putInt(values[cell]);
+                writer.putInt(child1[cell] == NONE ? NONE : position[child1[cell]]);
+                writer.putInt(child2[cell] == NONE ? NONE : position[child2[cell]]);
+            }
+            for (int cell : order) {
+                writer.putInt(edgeCount[cell]);
+            }
+            for (int cell : order) {
+                int end = edgeStart[cell] + edgeCount[cell];
+                for (int i = edgeStart[cell]; i < end; i++) {
+                    writer.putInt(position[edgePool[i]]);
+                }
+            }
+        }
+    }
+
+    public static CompactSpreadsheet load(Path path) throws IOException {
+        try (ChannelReader reader = new ChannelReader(path)) {
+            if (reader.getInt() != FILE_MAGIC || reader.getInt() != FILE_FORMAT_VERSION) {
+                throw new IOException(String.format("%s is not a saved spreadsheet", path));
+            }
+            // A cell takes at least 16 bytes and an edge 4
+            int size = reader.getInt();
+            int edges = reader.getInt();
+            if (size < 0 || size > reader.fileSize() / 16 || edges < 0 || edges > reader.fileSize() / Integer.BYTES) {
+                throw corrupted(path);
+            }
+            CompactSpreadsheet spreadsheet = new CompactSpreadsheet(Math.max(size, INITIAL_CAPACITY), Math.max(edges, INITIAL_CAPACITY));
+            for (int cell = 0; cell < size; cell++) {
+                String key = new String(reader.getBytes(), StandardCharsets.UTF_8);
+                if (spreadsheet.ids.put(key, cell) != null) {
+                    throw corrupted(path);
+                }
+                spreadsheet.keys[cell] = key;
+                spreadsheet.values[cell] = reader.getInt();
+                int child1 = reader.getInt();
+                int child2 = reader.getInt();
+                // The cells of a formula come before it
+                boolean direct = child1 == NONE && child2 == NONE;
+                if (!direct && (child1 < 0 || child1 >= cell || child2 < 0 || child2 >= cell)) {
+                    throw corrupted(path);
+                }
+                spreadsheet.child1[cell] = child1;
+                spreadsheet.child2[cell] = child2;
+            }
+            long next = 0;
+            for (int cell = 0; cell < size; cell++) {
+                int count = reader.getInt();
+                if (count < 0) {
+                    throw corrupted(path);
+                }
+                spreadsheet.edgeStart[cell] = (int) next;
+                spreadsheet.edgeCount[cell] = count;
+                spreadsheet.edgeCapacity[cell] = count;
+                next += count;
+            }
+            if (next != edges) {
+                throw corrupted(path);
+            }
+            for (int cell = 0; cell < size; cell++) {
+                int end = spreadsheet.edgeStart[cell] + spreadsheet.edgeCount[cell];
+                for (int i = spreadsheet.edgeStart[cell]; i < end; i++) {
+                    // The dependents of a cell come after it, and have it in their formula
+                    int dependent = reader.getInt();
+                    if (dependent <= cell || dependent >= size
+                            || (spreadsheet.child1[dependent] != cell && spreadsheet.child2[dependent] != cell)) {
+                        throw corrupted(path);
+                    }
+                    spreadsheet.edgePool[i] = dependent;
+                }
+            }
+            spreadsheet.edgePoolSize = edges;
+            spreadsheet.size = size;
+            return spreadsheet;
+        }
+    }
+
+    private static IOException corrupted(Path path) {
+        return new IOException(String.format("%s is corrupted", path));
+    }
+
+    private int idOf(String key) {
+        Integer id = ids.get(key);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format("Cell %s doesn't exist", key));
+        }
+        return id;
+    }
+
+    private int internCell(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (size == values.length) {
+            growCells(size * 2);
+        }
+        int cell = size++;
+        ids.put(key, cell);
+        keys[cell] = key;
+        child1[cell] = NONE;
+        child2[cell] = NONE;
+        return cell;
+    }
+
+    private void growCells(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        edgeStart = Arrays.copyOf(edgeStart, capacity);
+        edgeCount = Arrays.copyOf(edgeCount, capacity);
+        edgeCapacity = Arrays.copyOf(edgeCapacity, capacity);
+        stamp = Arrays.copyOf(stamp, capacity);
+        inDegree = Arrays.copyOf(inDegree, capacity);
+        stack = Arrays.copyOf(stack, capacity);
+        if (level != null) {
+            level = Arrays.copyOf(level, capacity);
+        }
+        if (levelStart != null) {
+            levelStart = Arrays.copyOf(levelStart, capacity + 1);
+        }
+        batchTouched = Arrays.copyOf(batchTouched, capacity);
+    }
+
+    /**
+     * Returns true if cell is target or (transitively) in the formula of target, i.e. target is reachable from cell.
+     */
+    private boolean dependsOn(int target, int cell) {
+        if (target == cell) {
+            return true;
+        }
+        int mark = nextEpoch();
+        int top = 0;
+        stack[top++] = cell;
+        stamp[cell] = mark;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (dependent == target) {
+                    return true;
+                }
+                if (stamp[dependent] != mark) {
+                    stamp[dependent] = mark;
+                    stack[top++] = dependent;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void recalculateCellsWhereInFormula(int cell) {
+        long start = System.nanoTime();
+        if (edgeCount[cell] == 0) {
+            notifyRecalcListener(keys[cell], 0, 0, 0, start);
+            return;
+        }
+        long edgesWalked = 0;
+        long cellsTouched = 0;
+        int maxDepth = 0;
+
+        // Collect the cone of cells depending on cell and count the formula edges coming from inside the cone
+        int mark = nextEpoch();
+        int coneSize = 1;
+        int top = 0;
+        stack[top++] = cell;
+        stamp[cell] = mark;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            edgesWalked += edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (stamp[dependent] != mark) {
+                    stamp[dependent] = mark;
+                    inDegree[dependent] = 0;
+                    if (level != null) {
+                        level[dependent] = 0;
+                    }
+                    coneSize++;
+                    stack[top++] = dependent;
+                }
+                inDegree[dependent]++;
+            }
+        }
+
+        if (coneSize >= parallelThreshold) {
+            int levels = recalculateLevels(cell);
+            notifyRecalcListener(keys[cell], coneSize - 1, edgesWalked, levels - 1, start);
+            return;
+        }
+
+        // Recompute the cone in topological order, a cell is ready once all its in-cone children are recomputed
+        if (level != null) {
+            level[cell] = 0;
+        }
+        top = 0;
+        stack[top++] = cell;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (level != null) {
+                    level[dependent] = Math.max(level[dependent], level[current] + 1);
+                }
+                if (--inDegree[dependent] == 0) {
+                    values[dependent] = values[child1[dependent]] + values[child2[dependent]];
+                    cellsTouched++;
+                    if (level != null) {
+                        maxDepth = Math.max(maxDepth, level[dependent]);
+                    }
+                    stack[top++] = dependent;
+                }
+            }
+        }
+        notifyRecalcListener(keys[cell], cellsTouched, edgesWalked, maxDepth, start);
+    }
+
+    /**
+     * Recomputes the cone of cell, whose in-cone formula edges are counted in inDegree, one level after the other.
+     * Returns the number of levels.
+     */
+    private int recalculateLevels(int cell) {
+        // A cell joins the next level once all its in-cone children are in earlier levels, stack lists the levels
+        int levels = 0;
+        int head = 0;
+        int tail = 0;
+        stack[tail++] = cell;
+        while (head < tail) {
+            levelStart[levels++] = head;
+            int levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                int current = stack[head];
+                int end = edgeStart[current] + edgeCount[current];
+                for (int i = edgeStart[current]; i < end; i++) {
+                    int dependent = edgePool[i];
+                    if (--inDegree[dependent] == 0) {
+                        stack[tail++] = dependent;
+                    }
+                }
+            }
+        }
+        levelStart[levels] = tail;
+
+        // Level 0 is the updated cell itself, which already holds its new value
+        for (int depth = 1; depth < levels; depth++) {
+            int from = levelStart[depth];
+            int to = levelStart[depth + 1];
+            if (to - from >= parallelThreshold) {
+                ForkJoinPool.commonPool().invoke(new RecalculateLevel(values, child1, child2, stack, from, to));
+            } else {
+                recalculateRange(values, child1, child2, stack, from, to);
+            }
+        }
+        return levels;
+    }
+
+    private static void recalculateRange(int[] values, int[] child1, int[] child2, int[] order, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int cell = order[i];
+            values[cell] = values[child1[cell]] + values[child2[cell]];
+        }
+    }
+
+    /**
+     * Recomputes the cells order[from, to) of one level, which do not depend on each other.
+     */
+    private static class RecalculateLevel extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] values;
+        private final int[] child1;
+        private final int[] child2;
+        private final int[] order;
+        private final int from;
+        private final int to;
+
+        RecalculateLevel(int[] values, int[] child1, int[] child2, int[] order, int from, int to) {
+            this.values = values;
+            this.child1 = child1;
+            this.child2 = child2;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_CHUNK_SIZE) {
+                recalculateRange(values, child1, child2, order, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RecalculateLevel(values, child1, child2, order, from, mid),
+                      new RecalculateLevel(values, child1, child2, order, mid, to));
+        }
+    }
+
+    private void notifyRecalcListener(String key, long cellsTouched, long edgesWalked, int maxDepth, long start) {
+        if (recalcListener != null) {
+            recalcListener.onRecalc(new RecalcStats(key, cellsTouched, edgesWalked, maxDepth, System.nanoTime() - start));
+        }
+    }
+
+    private void recordBatchWrite(int cell) {
+        if (!inBatch || batchTouched[cell]) {
+            return;
+        }
+        if (batchCount == batchCells.length) {
+            int capacity = batchCount * 2;
+            batchCells = Arrays.copyOf(batchCells, capacity);
+            savedValues = Arrays.copyOf(savedValues, capacity);
+            savedChild1 = Arrays.copyOf(savedChild1, capacity);
+            savedChild2 = Arrays.copyOf(savedChild2, capacity);
+        }
+        batchTouched[cell] = true;
+        batchCells[batchCount] = cell;
+        savedValues[batchCount] = values[cell];
+        savedChild1[batchCount] = child1[cell];
+        savedChild2[batchCount] = child2[cell];
+        batchCount++;
+    }
+
+    private void rollbackBatch() {
+        // Drop every formula written in the batch before restoring the ones from before it
+        for (int i = 0; i < batchCount; i++) {
+            int cell = batchCells[i];
+            if (child1[cell] != NONE) {
+                removeDependencyOfCell(cell);
+            }
+        }
+        for (int i = 0; i < batchCount; i++) {
+            int cell = batchCells[i];
+            if (cell >= batchStartSize) {
+                continue;
+            }
+            values[cell] = savedValues[i];
+            if (savedChild1[i] != NONE) {
+                child1[cell] = savedChild1[i];
+                child2[cell] = savedChild2[i];
+                addDependent(child1[cell], cell);
+                addDependent(child2[cell], cell);
+            }
+        }
+
+        // Forget the cells created in the batch, nothing refers to them anymore
+        for (int cell = batchStartSize; cell < size; cell++) {
+            ids.remove(keys[cell]);
+            keys[cell] = null;
+            edgePoolGarbage += edgeCapacity[cell];
+            edgeStart[cell] = 0;
+            edgeCount[cell] = 0;
+            edgeCapacity[cell] = 0;
+        }
+        endBatch();
+        size = batchStartSize;
+    }
+
+    private void endBatch() {
+        for (int i = 0; i < batchCount; i++) {
+            batchTouched[batchCells[i]] = false;
+        }
+        batchCount = 0;
+        inBatch = false;
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+
+    private void removeDependencyOfCell(int cell) {
+        removeDependent(child1[cell], cell);
+        removeDependent(child2[cell], cell);
+        child1[cell] = NONE;
+        child2[cell] = NONE;
+    }
+
+    private void addDependent(int cell, int dependent) {
+        if (edgeCount[cell] == edgeCapacity[cell]) {
+            relocateEdges(cell, Math.max(2, edgeCapacity[cell] * 2));
+        }
+        edgePool[edgeStart[cell] + edgeCount[cell]++] = dependent;
+    }
+
+    private void removeDependent(int cell, int dependent) {
+        int start = edgeStart[cell];
+        int last = start + edgeCount[cell] - 1;
+        for (int i = start; i <= last; i++) {
+            if (edgePool[i] == dependent) {
+                edgePool[i] = edgePool[last];
+                edgeCount[cell]--;
+                return;
+            }
+        }
+    }
+
+    private void relocateEdges(int cell, int capacity) {
+        if (edgePoolSize + capacity > edgePool.length) {
+            if (edgePoolGarbage > edgePoolSize / 2) {
+                compactEdges();
+            }
+            if (edgePoolSize + capacity > edgePool.length) {
+                edgePool = Arrays.copyOf(edgePool, Math.max(edgePool.length * 2, edgePoolSize + capacity));
+            }
+        }
+        System.arraycopy(edgePool, edgeStart[cell], edgePool, edgePoolSize, edgeCount[cell]);
+        edgePoolGarbage += edgeCapacity[cell];
+        edgeStart[cell] = edgePoolSize;
+        edgeCapacity[cell] = capacity;
+        edgePoolSize += capacity;
+    }
+
+    private void compactEdges() {
+        int[] compacted = new int[edgePool.length];
+        int next = 0;
+        for (int cell = 0; cell < size; cell++) {
+            System.arraycopy(edgePool, edgeStart[cell], compacted, next, edgeCount[cell]);
+            edgeStart[cell] = next;
+            next += edgeCapacity[cell];
+        }
+        edgePool = compacted;
+        edgePoolSize = next;
+        edgePoolGarbage = 0;
+    }
+
+    private static class ChannelWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
+
+        ChannelWriter(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private static class ChannelReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
+
+        ChannelReader(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            buffer.limit(0);
+        }
+
+        int getInt() throws IOException {
+            while (buffer.remaining() < Integer.BYTES) {
+                fill();
+            }
+            return buffer.getInt();
+        }
+
+        byte[] getBytes() throws IOException {
+            int length = getInt();
+            if (length < 0 || length > channel.size()) {
+                throw new IOException("Corrupted spreadsheet file");
+            }
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                if (!buffer.hasRemaining()) {
+                    fill();
+                }
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return bytes;
+        }
+
+        long fileSize() throws IOException {
+            return channel.size();
+        }
+
+        /**
+         * Reads at least one more byte from the channel, a read can return fewer bytes than asked for.
+         */
+        private void fill() throws IOException {
+            buffer.compact();
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            if (read < 0) {
+                throw new EOFException("Truncated spreadsheet file");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static void assertCorrupted(Path file) {
+        try {
+            CompactSpreadsheet.load(file);
+            assert false : "Loaded a corrupted file";
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+
+    public static void main(String[] args) {
+        CompactSpreadsheet spreadsheet = new CompactSpreadsheet();
+
+        spreadsheet.set("a", 1);
+        spreadsheet.set("b", 5);
+        assert spreadsheet.get("a") == 1;
+        assert spreadsheet.get("b") == 5;
+        try {
+            spreadsheet.get("c");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell c doesn't exist");
+        }
+        spreadsheet.set("c", "a", "b");
+        assert spreadsheet.get("c") == 6;
+        spreadsheet.set("d", "a", "c");
+        assert spreadsheet.get("d") == 7;
+        try {
+            spreadsheet.set("d", null, "a");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Both child1 and child2 must be passed as arguments");
+        }
+
+        spreadsheet.set("e", "c", "d");
+        spreadsheet.set("f", 5);
+        try {
+            spreadsheet.set("b", "f", "e");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        // A rejected formula leaves the sheet untouched
+        assert spreadsheet.get("b") == 5;
+        assert spreadsheet.get("e") == 13;
+
+        // Diamond: a feeds d both directly and through c
+        spreadsheet.set("a", 2);
+        assert spreadsheet.get("c") == 7;
+        assert spreadsheet.get("d") == 9;
+        assert spreadsheet.get("e") == 16;
+
+        // Replacing a formula with a value drops its dependencies
+        spreadsheet.set("c", 100);
+        spreadsheet.set("b", 1);
+        assert spreadsheet.get("c") == 100;
+        assert spreadsheet.get("d") == 102;
+        assert spreadsheet.get("e") == 202;
+
+        // Long chain of diamonds, each cell is recomputed once per update
+        CompactSpreadsheet chain = new CompactSpreadsheet();
+        int n = 100_000;
+        chain.set("x0", 1);
+        chain.set("x1", 1);
+        for (int i = 2; i < n; i++) {
+            chain.set("x" + i, "x" + (i - 1), "x" + (i - 2));
+        }
+        chain.set("x0", 2);
+        int[] expected = new int[n];
+        expected[0] = 2;
+        expected[1] = 1;
+        for (int i = 2; i < n; i++) {
+            expected[i] = expected[i - 1] + expected[i - 2];
+        }
+        for (int i = 0; i < n; i++) {
+            assert chain.get("x" + i) == expected[i];
+        }
+
+        // Batch of formulas that closes a cycle is rolled back entirely
+        spreadsheet.beginBatch();
+        spreadsheet.set("a", 50);
+        spreadsheet.set("g", "a", "b");
+        spreadsheet.set("c", "a", "b");
+        spreadsheet.set("b", "e", "a");
+        try {
+            spreadsheet.commit();
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        assert spreadsheet.get("a") == 2;
+        assert spreadsheet.get("b") == 1;
+        assert spreadsheet.get("e") == 202;
+        try {
+            spreadsheet.get("g");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell g doesn't exist");
+        }
+        spreadsheet.set("b", 2);
+        assert spreadsheet.get("d") == 102;
+        assert spreadsheet.get("e") == 202;
+
+        // Batch of values and formulas is recalculated once on commit
+        spreadsheet.beginBatch();
+        spreadsheet.set("a", 10);
+        spreadsheet.set("c", "a", "b");
+        spreadsheet.set("g", "e", "a");
+        spreadsheet.commit();
+        assert spreadsheet.get("c") == 12;
+        assert spreadsheet.get("d") == 22;
+        assert spreadsheet.get("e") == 34;
+        assert spreadsheet.get("g") == 44;
+
+        // Each formula edge is walked once per set, and a commit is reported once for the whole batch
+        CompactSpreadsheet listened = new CompactSpreadsheet();
+        listened.set("a", 1);
+        listened.set("b", 2);
+        listened.set("c", "a", "b");
+        listened.set("d", "c", "a");
+        List<RecalcStats> reports = new ArrayList<>();
+        listened.setRecalcListener(reports::add);
+        listened.set("a", 5);
+        assert reports.size() == 1;
+        assert reports.get(0).key.equals("a");
+        assert reports.get(0).cellsTouched == 2;
+        assert reports.get(0).edgesWalked == 3;
+        assert reports.get(0).maxDepth == 2;
+        reports.clear();
+        listened.beginBatch();
+        listened.set("a", 2);
+        listened.set("b", 3);
+        listened.commit();
+        assert listened.get("d") == 7;
+        assert reports.size() == 1;
+        assert reports.get(0).key.equals("a");
+        assert reports.get(0).cellsTouched == 2;
+        assert reports.get(0).edgesWalked == 4;
+        assert reports.get(0).maxDepth == 2;
+
+        // 10k inputs feeding a running total: setAll against sequential sets
+        int inputs = 10_000;
+        CompactSpreadsheet sequential = new CompactSpreadsheet();
+        CompactSpreadsheet batched = new CompactSpreadsheet();
+        Map<String, Integer> update = new HashMap<>();
+        for (CompactSpreadsheet sheet : new CompactSpreadsheet[] { sequential, batched }) {
+            sheet.set("i0", 0);
+            sheet.set("t0", "i0", "i0");
+            for (int i = 1; i < inputs; i++) {
+                sheet.set("i" + i, 0);
+                sheet.set("t" + i, "t" + (i - 1), "i" + i);
+            }
+        }
+        for (int i = 0; i < inputs; i++) {
+            update.put("i" + i, 1);
+        }
+        long start = System.nanoTime();
+        for (Map.Entry<String, Integer> entry : update.entrySet()) {
+            sequential.set(entry.getKey(), entry.getValue());
+        }
+        long sequentialNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        batched.setAll(update);
+        long batchedNanos = System.nanoTime() - start;
+        assert sequential.get("t" + (inputs - 1)) == inputs + 1;
+        assert batched.get("t" + (inputs - 1)) == inputs + 1;
+        System.out.println(String.format("%d inputs: sequential sets %d ms, setAll %d ms",
+                inputs, sequentialNanos / 1_000_000, batchedNanos / 1_000_000));
+
+        // A null value fails setAll without leaving its batch open or any of its values set
+        Map<String, Integer> partial = new LinkedHashMap<>();
+        partial.put("i0", 5);
+        partial.put("new", 5);
+        partial.put("i1", null);
+        try {
+            batched.setAll(partial);
+            assert false;
+        } catch (NullPointerException e) {
+            // Expected
+        }
+        assert batched.get("i0") == 1;
+        assert batched.get("t" + (inputs - 1)) == inputs + 1;
+        try {
+            batched.get("new");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell new doesn't exist");
+        }
+        batched.beginBatch();
+        batched.set("i0", 2);
+        batched.commit();
+        assert batched.get("t" + (inputs - 1)) == inputs + 3;
+
+        // Wide sheet: every level has width cells, each the sum of two cells of the level above
+        int width = 50_000;
+        int depth = 20;
+        CompactSpreadsheet wideParallel = new CompactSpreadsheet();
+        CompactSpreadsheet wideSequential = new CompactSpreadsheet();
+        wideParallel.setParallelThreshold(8192);
+        for (CompactSpreadsheet sheet : new CompactSpreadsheet[] { wideParallel, wideSequential }) {
+            sheet.set("input", 1);
+            for (int i = 0; i < width; i++) {
+                sheet.set("r0c" + i, "input", "input");
+            }
+            for (int row = 1; row < depth; row++) {
+                for (int i = 0; i < width; i++) {
+                    String above = "r" + (row - 1) + "c";
+                    sheet.set("r" + row + "c" + i, above + i, above + ((i + 1) % width));
+                }
+            }
+        }
+        List<RecalcStats> parallelReports = new ArrayList<>();
+        wideParallel.setRecalcListener(parallelReports::add);
+        long parallelNanos = 0;
+        sequentialNanos = 0;
+        for (int round = 2; round < 12; round++) {
+            start = System.nanoTime();
+            wideParallel.set("input", round);
+            parallelNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            wideSequential.set("input", round);
+            sequentialNanos += System.nanoTime() - start;
+        }
+        for (int i = 0; i < width; i++) {
+            String key = "r" + (depth - 1) + "c" + i;
+            assert wideParallel.get(key) == wideSequential.get(key);
+            assert wideParallel.get(key) == 11 << depth;
+        }
+        assert parallelReports.get(0).cellsTouched == depth * width;
+        assert parallelReports.get(0).maxDepth == depth;
+        System.out.println(String.format("%d x %d cells on %d cores: sequential %d ms, parallel %d ms per set", depth, width,
+                Runtime.getRuntime().availableProcessors(), sequentialNanos / 10_000_000, parallelNanos / 10_000_000));
+
+        // Save and load round trip, the loaded sheet keeps recalculating
+        try {
+            Path file = Files.createTempFile("spreadsheet", ".bin");
+            spreadsheet.save(file);
+            CompactSpreadsheet loaded = CompactSpreadsheet.load(file);
+            for (String key : new String[] { "a", "b", "c", "d", "e", "f", "g" }) {
+                assert loaded.get(key) == spreadsheet.get(key);
+            }
+            loaded.set("a", 20);
+            assert loaded.get("e") == 64;
+            assert loaded.get("g") == 84;
+
+            // Corrupted files of c = a + b, laid out as: header at 0, cells a at 16, b at 33 and c at 50 (child1 at 59
+            // and child2 at 63), dependent counts at 67, dependents at 79
+            CompactSpreadsheet small = new CompactSpreadsheet();
+            small.set("a", 1);
+            small.set("b", 2);
+            small.set("c", "a", "b");
+            small.save(file);
+            byte[] saved = Files.readAllBytes(file);
+            assert saved.length == 87;
+            int[][] corruptions = {
+                { 8, -1 }, // Negative number of cells
+                { 8, 1_000_000 }, // More cells than the file holds
+                { 12, -5 }, // Negative number of edges
+                { 16, Integer.MAX_VALUE }, // Key longer than the file
+                { 59, 7 }, // Formula cell out of the sheet
+                { 59, 2 }, // Formula on itself
+                { 63, NONE }, // Half a formula
+                { 67, -1 }, // Negative count, the counts still adding up to e
+                { 79, 0 }, // Dependent before its cell
+                { 83, 3 }, // Dependent out of the sheet
+            };
+            for (int[] corruption : corruptions) {
+                ByteBuffer corrupted = ByteBuffer.wrap(saved.clone());
+                corrupted.putInt(corruption[0], corruption[1]);
+                if (corruption[0] == 67) {
+                    corrupted.putInt(71, 3);
+                }
+                Files.write(file, corrupted.array());
+                assertCorrupted(file);
+            }
+            // Every truncation fails, including the ones ending in the middle of an int
+            for (int length = 0; length < saved.length; length++) {
+                Files.write(file, Arrays.copyOf(saved, length));
+                assertCorrupted(file);
+            }
+
+            CompactSpreadsheet large = new CompactSpreadsheet();
+            large.set("x0", 1);
+            large.set("x1", 1);
+            for (int i = 2; i < 1_000_000; i++) {
+                large.set("x" + i, "x" + (i - 1), "x" + (i - 2));
+            }
+            start = System.nanoTime();
+            large.save(file);
+            long saveNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            loaded = CompactSpreadsheet.load(file);
+            long loadNanos = System.nanoTime() - start;
+            assert loaded.get("x999999") == large.get("x999999");
+            loaded.set("x0", 2);
+            large.set("x0", 2);
+            assert loaded.get("x999999") == large.get("x999999");
+            System.out.println(String.format("1M cells: save %d ms, load %d ms, %d MB",
+                    saveNanos / 1_000_000, loadNanos / 1_000_000, Files.size(file) >> 20));
+            Files.delete(file);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        System.out.println("All tests passed.");
+    }
+}
@@ -32,12 +32,22 @@
 //  * O(n) space will be required for the Excel Form itself. 
 //  * For each cell in this form, the cells_where_in_formula list can contain O(n) cells.
 
-public class Spreadsheet {
+import java.util.*;
+
+public class FeaturedSpreadsheet {
     HashMap<String, Cell> graph;
+    private RecalcListener recalcListener;
+    private long cellsTouched;
+    private long edgesWalked;
+    private int maxDepth;
     
-    public Spreadsheet() {
+    public FeaturedSpreadsheet() {
         graph = new HashMap<String, Cell>();
     }
+
+    public void setRecalcListener(RecalcListener recalcListener) {
+        this.recalcListener = recalcListener;
+    }
     
     public int get(String key) {
         if (!graph.containsKey(key)) {
@@ -63,7 +73,12 @@ public class Spreadsheet {
         
         var visited = new HashSet<String>();
         visited.add(key);
-        updateCellsWhereInFormula(cell, oldVal, newVal, visited);
+        long start = System.nanoTime();
+        cellsTouched = 0;
+        edgesWalked = 0;
+        maxDepth = 0;
+        updateCellsWhereInFormula(cell, oldVal, newVal, visited, 1);
+        notifyRecalcListener(key, start);
     }
     
     public void set(String key, String child1, String child2) {
@@ -93,11 +108,17 @@ public class Spreadsheet {
         
         var visited = new HashSet<String>();
         visited.add(key);
-        updateCellsWhereInFormula(cell, oldVal, newVal, visited);
+        long start = System.nanoTime();
+        cellsTouched = 0;
+        edgesWalked = 0;
+        maxDepth = 0;
+        updateCellsWhereInFormula(cell, oldVal, newVal, visited, 1);
+        notifyRecalcListener(key, start);
     }
     
-    private void updateCellsWhereInFormula(Cell cell, int oldVal, int newVal, HashSet<String> visited) {
+    private void updateCellsWhereInFormula(Cell cell, int oldVal, int newVal, HashSet<String> visited, int depth) {
         for (String dependentCellKey : cell.cellsWhereInFormula) {
+            edgesWalked++;
             if (visited.contains(dependentCellKey)) {
                 throw new IllegalArgumentException("Cycle detected. Formula cannot create a cyclic dependency");
             }
@@ -107,7 +128,15 @@ public class Spreadsheet {
             dependentCell.val -= oldVal;
             dependentCell.val += newVal;
             int dependentNewVal = dependentCell.val;
-            updateCellsWhereInFormula(dependentCell, dependentOldVal, dependentNewVal, visited);
+            cellsTouched++;
+            maxDepth = Math.max(maxDepth, depth);
+            updateCellsWhereInFormula(dependentCell, dependentOldVal, dependentNewVal, visited, depth + 1);
+        }
+    }
+
+    private void notifyRecalcListener(String key, long start) {
+        if (recalcListener != null) {
+            recalcListener.onRecalc(new RecalcStats(key, cellsTouched, edgesWalked, maxDepth, System.nanoTime() - start));
         }
     }
 
@@ -119,7 +148,7 @@ public class Spreadsheet {
     }
     
     public static void main(String[] args) {
-        Spreadsheet spreadsheet = new Spreadsheet();
+        FeaturedSpreadsheet spreadsheet = new FeaturedSpreadsheet();
     
         spreadsheet.set("a", 1);
         spreadsheet.set("b", 5);
@@ -149,17 +178,17 @@ public class Spreadsheet {
         }
         System.out.println("All tests passed.");
     }
-}
 
-class Cell {
-    String key;
-    int val;
-    String child1;
-    String child2;
-    HashSet<String> cellsWhereInFormula;
+    private static class Cell {
+        String key;
+        int val;
+        String child1;
+        String child2;
+        HashSet<String> cellsWhereInFormula;
     
-    public Cell(String key) {
-        this.key = key;
-        cellsWhereInFormula = new HashSet<String>();
+        public Cell(String key) {
+            this.key = key;
+            cellsWhereInFormula = new HashSet<String>();
+        }
     }
 }
@@ -0,0 +1,1090 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+//  Spreadsheet where each cell can:
+//  ● Hold a direct integer value
+//  ● Hold a formula over other cells, e.g. "A1 * (B2 - 3) + SUM(C1:C100) - MAX(D1:E10)"
+//  Formula language:
+//  ● Integer constants, cell references, parentheses, unary minus, +, - and *
+//  ● SUM, COUNT, MIN and MAX over a rectangular range of cells such as A1:C10. Cells of the range that were never set
+//    are empty: they add 0 to a SUM and are skipped by COUNT, MIN and MAX. MIN and MAX of a range with no values are 0.
+//  Values are longs and overflow wraps around like Java long arithmetic.
+//  Division is not supported, as integer division by zero would need an error value.
+
+//  Each formula is parsed into an AST, which is then compiled into a flat stack machine program (int[] opcodes plus a
+//  long[] constant pool). Evaluating a program allocates nothing: operands live on one long[] stack shared by all cells.
+//  Dependencies are registered from the AST: a cell is in the dependents of every cell its formula references,
+//  directly or through a range.
+
+//  Every SUM/COUNT/MIN/MAX in a formula becomes an aggregate that caches its value. When a cell of its range changes,
+//  the aggregate is updated from the old and new values of that cell instead of scanning the range again:
+//  ● SUM adds newVal - oldVal in O(1). Long addition wraps around and is associative and commutative modulo 2^64,
+//    so the result is bit for bit the one a full rescan would give, overflow included.
+//  ● COUNT only changes when an empty cell of the range is set, in O(1).
+//  ● MIN and MAX keep a segment tree over the cells of the range, empty cells holding the identity of the function,
+//    and update the changed leaf and its ancestors in O(log(range size)).
+
+//  Recalculation is the same as CompactSpreadsheet: the cone of cells depending on the updated cell is recomputed
+//  once, in topological order, so an aggregate is up to date before the formula reading it is evaluated.
+//  Cycles are rejected when a formula is set, before any state is modified.
+
+//  Runtime Complexity:
+//  Here, c refers to the number of cells that depend directly or transitively on the updated cell, e to the number
+//  of references between them, and f to the length of the formulas in the cone.
+//  * set value is O(c + e + f + a log(r)) where a is the number of MIN/MAX ranges containing updated cells and r their size
+//  * set formula is O(length + size of its ranges) to compile and register, plus the recalculation above
+//  * get is O(1)
+//  Space Complexity: O(n + e) for n cells, with range references counting one edge per cell in the range,
+//  plus two longs per cell of a MIN/MAX range for its segment tree.
+
+import java.util.*;
+
+public class FormulaSpreadsheet {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Opcodes of the compiled formulas, each followed by its operand if it has one
+    private static final int PUSH_CONSTANT = 0;
+    private static final int PUSH_CELL = 1;
+    private static final int PUSH_AGGREGATE = 2;
+    private static final int ADD = 3;
+    private static final int SUBTRACT = 4;
+    private static final int MULTIPLY = 5;
+    private static final int NEGATE = 6;
+
+    // Aggregate functions
+    private static final int SUM = 0;
+    private static final int COUNT = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+    private static final String[] FUNCTION_NAMES = { "SUM", "COUNT", "MIN", "MAX" };
+
+    private final HashMap<String, Integer> ids;
+    private String[] keys;
+    private long[] values;
+    // Cells referenced by a range are interned before they are set, they stay empty until then
+    private boolean[] defined;
+    private int[] column;
+    private int[] row;
+    private int size;
+
+    // Compiled formula of each cell, null for cells holding a direct value
+    private int[][] formulaCode;
+    private long[][] formulaConstants;
+    private int[][] formulaReferences;
+    private int[][] formulaAggregates;
+
+    // Cells where each cell is in formula, and aggregates whose range contains each cell
+    private final IntLists dependents;
+    private final IntLists memberships;
+
+    private int[] aggregateFunction;
+    private long[] aggregateValue;
+    private int[] aggregateCount;
+    private int[][] aggregateMembers;
+    // A cell is at position (column - firstColumn) * height + (row - firstRow) of aggregateMembers
+    private int[] aggregateFirstColumn;
+    private int[] aggregateFirstRow;
+    private int[] aggregateHeight;
+    // Segment tree of MIN and MAX aggregates, leaves of the m cells of the range are tree[m, 2m) and tree[1] is the root
+    private long[][] aggregateTree;
+    private int aggregates;
+    private int[] freeAggregates;
+    private int freeAggregateCount;
+
+    // Scratch space reused by every traversal and evaluation
+    private int[] stamp;
+    private int epoch;
+    private int[] inDegree;
+    private int[] stack;
+    private long[] operands;
+
+    public FormulaSpreadsheet() {
+        ids = new HashMap<>();
+        keys = new String[INITIAL_CAPACITY];
+        values = new long[INITIAL_CAPACITY];
+        defined = new boolean[INITIAL_CAPACITY];
+        column = new int[INITIAL_CAPACITY];
+        row = new int[INITIAL_CAPACITY];
+        formulaCode = new int[INITIAL_CAPACITY][];
+        formulaConstants = new long[INITIAL_CAPACITY][];
+        formulaReferences = new int[INITIAL_CAPACITY][];
+        formulaAggregates = new int[INITIAL_CAPACITY][];
+        dependents = new IntLists();
+        memberships = new IntLists();
+        aggregateFunction = new int[INITIAL_CAPACITY];
+        aggregateValue = new long[INITIAL_CAPACITY];
+        aggregateCount = new int[INITIAL_CAPACITY];
+        aggregateMembers = new int[INITIAL_CAPACITY][];
+        aggregateFirstColumn = new int[INITIAL_CAPACITY];
+        aggregateFirstRow = new int[INITIAL_CAPACITY];
+        aggregateHeight = new int[INITIAL_CAPACITY];
+        aggregateTree = new long[INITIAL_CAPACITY][];
+        freeAggregates = new int[INITIAL_CAPACITY];
+        stamp = new int[INITIAL_CAPACITY];
+        inDegree = new int[INITIAL_CAPACITY];
+        stack = new int[INITIAL_CAPACITY];
+        operands = new long[INITIAL_CAPACITY];
+    }
+
+    public long get(String key) {
+        return values[idOf(key)];
+    }
+
+    public void set(String key, long val) {
+        int cell = internCell(key);
+        if (formulaCode[cell] != null) {
+            removeFormula(cell);
+        }
+        updateValue(cell, val);
+    }
+
+    public void set(String key, String child1, String child2) {
+        if (child1 == null || child2 == null) {
+            throw new IllegalArgumentException("Both child1 and child2 must be passed as arguments");
+        }
+        set(key, new Binary('+', new Reference(child1), new Reference(child2)));
+    }
+
+    public void set(String key, String formula) {
+        if (formula == null) {
+            throw new IllegalArgumentException("Formula must be passed as argument");
+        }
+        set(key, new Parser(formula).parse());
+    }
+
+    private void set(String key, Expr formula) {
+        // Validate everything before modifying any state
+        List<Integer> references = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        collectReferences(formula, references, ranges);
+        Integer existing = ids.get(key);
+        boolean cycle = existing == null
+                ? inRanges(parseCoordinates(key), ranges)
+                : createsCycle(existing, references, ranges);
+        if (cycle) {
+            throw new IllegalArgumentException("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+
+        int cell = internCell(key);
+        if (formulaCode[cell] != null) {
+            removeFormula(cell);
+        }
+        new Compiler(cell).compile(formula);
+        updateValue(cell, evaluate(cell));
+    }
+
+    private int idOf(String key) {
+        Integer id = ids.get(key);
+        if (id == null || !defined[id]) {
+            throw new IllegalArgumentException(String.format("Cell %s doesn't exist", key));
+        }
+        return id;
+    }
+
+    private int internCell(String key) {
+        int cell = internEmptyCell(key);
+        if (!defined[cell]) {
+            defined[cell] = true;
+            // Empty cells are skipped by COUNT, MIN and MAX, it now has a value of 0 until it is updated
+            for (int i = memberships.start(cell), end = memberships.end(cell); i < end; i++) {
+                int aggregate = memberships.at(i);
+                aggregateCount[aggregate]++;
+                if (aggregateFunction[aggregate] == COUNT) {
+                    aggregateValue[aggregate]++;
+                } else if (aggregateTree[aggregate] != null) {
+                    updateTree(aggregate, cell, 0);
+                }
+            }
+        }
+        return cell;
+    }
+
+    private int internEmptyCell(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (size == values.length) {
+            growCells(size * 2);
+        }
+        int cell = size++;
+        ids.put(key, cell);
+        keys[cell] = key;
+        int[] coordinates = parseCoordinates(key);
+        column[cell] = coordinates == null ? NONE : coordinates[0];
+        row[cell] = coordinates == null ? NONE : coordinates[1];
+        dependents.ensureOwners(size);
+        memberships.ensureOwners(size);
+        return cell;
+    }
+
+    private void growCells(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        defined = Arrays.copyOf(defined, capacity);
+        column = Arrays.copyOf(column, capacity);
+        row = Arrays.copyOf(row, capacity);
+        formulaCode = Arrays.copyOf(formulaCode, capacity);
+        formulaConstants = Arrays.copyOf(formulaConstants, capacity);
+        formulaReferences = Arrays.copyOf(formulaReferences, capacity);
+        formulaAggregates = Arrays.copyOf(formulaAggregates, capacity);
+        stamp = Arrays.copyOf(stamp, capacity);
+        inDegree = Arrays.copyOf(inDegree, capacity);
+        stack = Arrays.copyOf(stack, capacity);
+    }
+
+    private void collectReferences(Expr expr, List<Integer> references, List<int[]> ranges) {
+        if (expr instanceof Reference) {
+            references.add(idOf(((Reference) expr).key));
+        } else if (expr instanceof Aggregate) {
+            Aggregate aggregate = (Aggregate) expr;
+            ranges.add(parseRange(aggregate.from, aggregate.to));
+        } else if (expr instanceof Negate) {
+            collectReferences(((Negate) expr).operand, references, ranges);
+        } else if (expr instanceof Binary) {
+            collectReferences(((Binary) expr).left, references, ranges);
+            collectReferences(((Binary) expr).right, references, ranges);
+        }
+    }
+
+    /**
+     * Returns true if cell is referenced by the new formula or any cell referenced by it depends on cell,
+     * i.e. a referenced cell is reachable from cell through the dependents.
+     */
+    private boolean createsCycle(int cell, List<Integer> references, List<int[]> ranges) {
+        int mark = nextEpoch();
+        int top = 0;
+        stack[top++] = cell;
+        stamp[cell] = mark;
+        while (top > 0) {
+            int current = stack[--top];
+            if (references.contains(current) || inRanges(new int[] { column[current], row[current] }, ranges)) {
+                return true;
+            }
+            for (int i = dependents.start(current), end = dependents.end(current); i < end; i++) {
+                int dependent = dependents.at(i);
+                if (stamp[dependent] != mark) {
+                    stamp[dependent] = mark;
+                    stack[top++] = dependent;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean inRanges(int[] coordinates, List<int[]> ranges) {
+        if (coordinates == null) {
+            return false;
+        }
+        for (int[] range : ranges) {
+            if (range[0] <= coordinates[0] && coordinates[0] <= range[2]
+                    && range[1] <= coordinates[1] && coordinates[1] <= range[3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeFormula(int cell) {
+        for (int reference : formulaReferences[cell]) {
+            dependents.remove(reference, cell);
+        }
+        for (int aggregate : formulaAggregates[cell]) {
+            for (int member : aggregateMembers[aggregate]) {
+                dependents.remove(member, cell);
+                memberships.remove(member, aggregate);
+            }
+            aggregateMembers[aggregate] = null;
+            aggregateTree[aggregate] = null;
+            freeAggregates[freeAggregateCount++] = aggregate;
+        }
+        formulaCode[cell] = null;
+        formulaConstants[cell] = null;
+        formulaReferences[cell] = null;
+        formulaAggregates[cell] = null;
+    }
+
+    private int createAggregate(int owner, int function, int[] range) {
+        int aggregate;
+        if (freeAggregateCount > 0) {
+            aggregate = freeAggregates[--freeAggregateCount];
+        } else {
+            if (aggregates == aggregateFunction.length) {
+                int capacity = aggregates * 2;
+                aggregateFunction = Arrays.copyOf(aggregateFunction, capacity);
+                aggregateValue = Arrays.copyOf(aggregateValue, capacity);
+                aggregateCount = Arrays.copyOf(aggregateCount, capacity);
+                aggregateMembers = Arrays.copyOf(aggregateMembers, capacity);
+                aggregateFirstColumn = Arrays.copyOf(aggregateFirstColumn, capacity);
+                aggregateFirstRow = Arrays.copyOf(aggregateFirstRow, capacity);
+                aggregateHeight = Arrays.copyOf(aggregateHeight, capacity);
+                aggregateTree = Arrays.copyOf(aggregateTree, capacity);
+                freeAggregates = Arrays.copyOf(freeAggregates, capacity);
+            }
+            aggregate = aggregates++;
+        }
+
+        int[] members = new int[(range[2] - range[0] + 1) * (range[3] - range[1] + 1)];
+        int next = 0;
+        for (int c = range[0]; c <= range[2]; c++) {
+            for (int r = range[1]; r <= range[3]; r++) {
+                int member = internEmptyCell(columnName(c) + r);
+                members[next++] = member;
+                dependents.add(member, owner);
+                memberships.add(member, aggregate);
+            }
+        }
+        aggregateFunction[aggregate] = function;
+        aggregateMembers[aggregate] = members;
+        aggregateFirstColumn[aggregate] = range[0];
+        aggregateFirstRow[aggregate] = range[1];
+        aggregateHeight[aggregate] = range[3] - range[1] + 1;
+        buildAggregate(aggregate);
+        return aggregate;
+    }
+
+    private void buildAggregate(int aggregate) {
+        int function = aggregateFunction[aggregate];
+        int[] members = aggregateMembers[aggregate];
+        int count = 0;
+        long sum = 0;
+        for (int member : members) {
+            if (defined[member]) {
+                sum += values[member];
+                count++;
+            }
+        }
+        aggregateCount[aggregate] = count;
+
+        if (function == SUM) {
+            aggregateValue[aggregate] = sum;
+        } else if (function == COUNT) {
+            aggregateValue[aggregate] = count;
+        } else {
+            int m = members.length;
+            long[] tree = new long[2 * m];
+            for (int i = 0; i < m; i++) {
+                tree[m + i] = defined[members[i]] ? values[members[i]] : identity(function);
+            }
+            for (int i = m - 1; i >= 1; i--) {
+                tree[i] = combine(function, tree[2 * i], tree[2 * i + 1]);
+            }
+            aggregateTree[aggregate] = tree;
+            aggregateValue[aggregate] = count == 0 ? 0 : tree[1];
+        }
+    }
+
+    private void updateTree(int aggregate, int cell, long val) {
+        int function = aggregateFunction[aggregate];
+        long[] tree = aggregateTree[aggregate];
+        int position = (column[cell] - aggregateFirstColumn[aggregate]) * aggregateHeight[aggregate]
+                + (row[cell] - aggregateFirstRow[aggregate]);
+        int i = tree.length / 2 + position;
+        tree[i] = val;
+        for (i >>= 1; i >= 1; i >>= 1) {
+            tree[i] = combine(function, tree[2 * i], tree[2 * i + 1]);
+        }
+        aggregateValue[aggregate] = aggregateCount[aggregate] == 0 ? 0 : tree[1];
+    }
+
+    private static long identity(int function) {
+        return function == MIN ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
+    private static long combine(int function, long a, long b) {
+        return function == MIN ? Math.min(a, b) : Math.max(a, b);
+    }
+
+    /**
+     * Brings the aggregates whose range contains cell up to date with its value changing from oldVal to newVal.
+     */
+    private void updateAggregates(int cell, long oldVal, long newVal) {
+        for (int i = memberships.start(cell), end = memberships.end(cell); i < end; i++) {
+            int aggregate = memberships.at(i);
+            int function = aggregateFunction[aggregate];
+            if (function == SUM) {
+                aggregateValue[aggregate] += newVal - oldVal;
+            } else if (function != COUNT) {
+                updateTree(aggregate, cell, newVal);
+            }
+        }
+    }
+
+    private void updateValue(int cell, long val) {
+        long oldVal = values[cell];
+        values[cell] = val;
+        if (oldVal != val) {
+            updateAggregates(cell, oldVal, val);
+        }
+        recalculateCellsWhereInFormula(cell);
+    }
+
+    private void recalculateCellsWhereInFormula(int cell) {
+        if (dependents.end(cell) == dependents.start(cell)) {
+            return;
+        }
+
+        // Collect the cone of cells depending on cell and count the references coming from inside the cone
+        int mark = nextEpoch();
+        int top = 0;
+        stack[top++] = cell;
+        stamp[cell] = mark;
+        while (top > 0) {
+            int current = stack[--top];
+            for (int i = dependents.start(current), end = dependents.end(current); i < end; i++) {
+                int dependent = dependents.at(i);
+                if (stamp[dependent] != mark) {
+                    stamp[dependent] = mark;
+                    inDegree[dependent] = 0;
+                    stack[top++] = dependent;
+                }
+                inDegree[dependent]++;
+            }
+        }
+
+        // Recompute the cone in topological order, a cell is ready once all its in-cone references are recomputed
+        top = 0;
+        stack[top++] = cell;
+        while (top > 0) {
+            int current = stack[--top];
+            for (int i = dependents.start(current), end = dependents.end(current); i < end; i++) {
+                int dependent = dependents.at(i);
+                if (--inDegree[dependent] == 0) {
+                    long oldVal = values[dependent];
+                    long newVal = evaluate(dependent);
+                    values[dependent] = newVal;
+                    if (oldVal != newVal) {
+                        updateAggregates(dependent, oldVal, newVal);
+                    }
+                    stack[top++] = dependent;
+                }
+            }
+        }
+    }
+
+    private long evaluate(int cell) {
+        int[] code = formulaCode[cell];
+        long[] constants = formulaConstants[cell];
+        long[] operands = this.operands;
+        int top = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case PUSH_CONSTANT:
+                    operands[top++] = constants[code[++pc]];
+                    break;
+                case PUSH_CELL:
+                    operands[top++] = values[code[++pc]];
+                    break;
+                case PUSH_AGGREGATE:
+                    operands[top++] = aggregateValue[code[++pc]];
+                    break;
+                case ADD:
+                    top--;
+                    operands[top - 1] += operands[top];
+                    break;
+                case SUBTRACT:
+                    top--;
+                    operands[top - 1] -= operands[top];
+                    break;
+                case MULTIPLY:
+                    top--;
+                    operands[top - 1] *= operands[top];
+                    break;
+                case NEGATE:
+                    operands[top - 1] = -operands[top - 1];
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[pc]);
+            }
+        }
+        return operands[0];
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+
+    /**
+     * Returns {column, row} of a key like "AB12", or null if the key is not a cell coordinate.
+     */
+    private static int[] parseCoordinates(String key) {
+        int i = 0;
+        int col = 0;
+        while (i < key.length() && key.charAt(i) >= 'A' && key.charAt(i) <= 'Z') {
+            col = col * 26 + (key.charAt(i) - 'A' + 1);
+            i++;
+            if (col > 18_278) {
+                return null;
+            }
+        }
+        if (i == 0 || i == key.length() || i + 9 < key.length()) {
+            return null;
+        }
+        int r = 0;
+        for (int j = i; j < key.length(); j++) {
+            char c = key.charAt(j);
+            if (c < '0' || c > '9' || (j == i && c == '0')) {
+                return null;
+            }
+            r = r * 10 + (c - '0');
+        }
+        return new int[] { col, r };
+    }
+
+    private static String columnName(int col) {
+        StringBuilder name = new StringBuilder();
+        while (col > 0) {
+            col--;
+            name.append((char) ('A' + col % 26));
+            col /= 26;
+        }
+        return name.reverse().toString();
+    }
+
+    /**
+     * Returns {fromColumn, fromRow, toColumn, toRow} of the range between two coordinates, in increasing order.
+     */
+    private static int[] parseRange(String from, String to) {
+        int[] a = parseCoordinates(from);
+        int[] b = parseCoordinates(to);
+        if (a == null || b == null) {
+            throw new IllegalArgumentException(String.format("Invalid range %s:%s", from, to));
+        }
+        return new int[] { Math.min(a[0], b[0]), Math.min(a[1], b[1]), Math.max(a[0], b[0]), Math.max(a[1], b[1]) };
+    }
+
+    /**
+     * Compiles a formula AST into the stack machine program of a cell, and registers the dependencies of the cell.
+     */
+    private class Compiler {
+        private final int cell;
+        private int[] code = new int[16];
+        private int length;
+        private final List<Long> constants = new ArrayList<>();
+        private final List<Integer> references = new ArrayList<>();
+        private final List<Integer> cellAggregates = new ArrayList<>();
+        private int depth;
+        private int maxDepth;
+
+        Compiler(int cell) {
+            this.cell = cell;
+        }
+
+        void compile(Expr formula) {
+            emit(formula);
+
+            formulaCode[cell] = Arrays.copyOf(code, length);
+            formulaConstants[cell] = new long[constants.size()];
+            for (int i = 0; i < constants.size(); i++) {
+                formulaConstants[cell][i] = constants.get(i);
+            }
+            formulaReferences[cell] = new int[references.size()];
+            for (int i = 0; i < references.size(); i++) {
+                formulaReferences[cell][i] = references.get(i);
+                dependents.add(references.get(i), cell);
+            }
+            formulaAggregates[cell] = new int[cellAggregates.size()];
+            for (int i = 0; i < cellAggregates.size(); i++) {
+                formulaAggregates[cell][i] = cellAggregates.get(i);
+            }
+            if (maxDepth > operands.length) {
+                operands = new long[maxDepth];
+            }
+        }
+
+        private void emit(Expr expr) {
+            if (expr instanceof Constant) {
+                constants.add(((Constant) expr).value);
+                emit(PUSH_CONSTANT, constants.size() - 1);
+                push();
+            } else if (expr instanceof Reference) {
+                int reference = ids.get(((Reference) expr).key);
+                references.add(reference);
+                emit(PUSH_CELL, reference);
+                push();
+            } else if (expr instanceof Aggregate) {
+                Aggregate aggregate = (Aggregate) expr;
+                int id = createAggregate(cell, aggregate.function, parseRange(aggregate.from, aggregate.to));
+                cellAggregates.add(id);
+                emit(PUSH_AGGREGATE, id);
+                push();
+            } else if (expr instanceof Negate) {
+                emit(((Negate) expr).operand);
+                emit(NEGATE);
+            } else {
+                Binary binary = (Binary) expr;
+                emit(binary.left);
+                emit(binary.right);
+                emit(binary.operator == '+' ? ADD : binary.operator == '-' ? SUBTRACT : MULTIPLY);
+                depth--;
+            }
+        }
+
+        private void push() {
+            maxDepth = Math.max(maxDepth, ++depth);
+        }
+
+        private void emit(int... instruction) {
+            if (length + instruction.length > code.length) {
+                code = Arrays.copyOf(code, code.length * 2);
+            }
+            for (int word : instruction) {
+                code[length++] = word;
+            }
+        }
+    }
+
+    /**
+     * Recursive descent parser of the formula language:
+     *  expression := term (('+' | '-') term)*
+     *  term       := unary ('*' unary)*
+     *  unary      := '-' unary | primary
+     *  primary    := number | reference | function '(' reference ':' reference ')' | '(' expression ')'
+     */
+    private static class Parser {
+        private final String formula;
+        private int position;
+
+        Parser(String formula) {
+            this.formula = formula;
+        }
+
+        Expr parse() {
+            Expr expr = parseExpression();
+            skipSpaces();
+            if (position != formula.length()) {
+                throw error();
+            }
+            return expr;
+        }
+
+        private Expr parseExpression() {
+            Expr expr = parseTerm();
+            while (true) {
+                skipSpaces();
+                if (accept('+')) {
+                    expr = new Binary('+', expr, parseTerm());
+                } else if (accept('-')) {
+                    expr = new Binary('-', expr, parseTerm());
+                } else {
+                    return expr;
+                }
+            }
+        }
+
+        private Expr parseTerm() {
+            Expr expr = parseUnary();
+            while (true) {
+                skipSpaces();
+                if (accept('*')) {
+                    expr = new Binary('*', expr, parseUnary());
+                } else {
+                    return expr;
+                }
+            }
+        }
+
+        private Expr parseUnary() {
+            skipSpaces();
+            if (accept('-')) {
+                return new Negate(parseUnary());
+            }
+            return parsePrimary();
+        }
+
+        private Expr parsePrimary() {
+            skipSpaces();
+            if (accept('(')) {
+                Expr expr = parseExpression();
+                skipSpaces();
+                expect(')');
+                return expr;
+            }
+            if (position < formula.length() && Character.isDigit(formula.charAt(position))) {
+                int start = position;
+                while (position < formula.length() && Character.isDigit(formula.charAt(position))) {
+                    position++;
+                }
+                try {
+                    return new Constant(Long.parseLong(formula.substring(start, position)));
+                } catch (NumberFormatException e) {
+                    throw error();
+                }
+            }
+            String identifier = parseIdentifier();
+            skipSpaces();
+            if (!accept('(')) {
+                return new Reference(identifier);
+            }
+            int function = Arrays.asList(FUNCTION_NAMES).indexOf(identifier);
+            if (function == NONE) {
+                throw new IllegalArgumentException(String.format("Unknown function %s in formula %s", identifier, formula));
+            }
+            skipSpaces();
+            String from = parseIdentifier();
+            skipSpaces();
+            expect(':');
+            skipSpaces();
+            String to = parseIdentifier();
+            skipSpaces();
+            expect(')');
+            return new Aggregate(function, from, to);
+        }
+
+        private String parseIdentifier() {
+            int start = position;
+            while (position < formula.length()
+                    && (Character.isLetterOrDigit(formula.charAt(position)) || formula.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position || Character.isDigit(formula.charAt(start))) {
+                throw error();
+            }
+            return formula.substring(start, position);
+        }
+
+        private void skipSpaces() {
+            while (position < formula.length() && formula.charAt(position) == ' ') {
+                position++;
+            }
+        }
+
+        private boolean accept(char c) {
+            if (position < formula.length() && formula.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!accept(c)) {
+                throw error();
+            }
+        }
+
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException(String.format("Invalid formula %s at position %d", formula, position));
+        }
+    }
+
+    private abstract static class Expr {
+    }
+
+    private static class Constant extends Expr {
+        final long value;
+
+        Constant(long value) {
+            this.value = value;
+        }
+    }
+
+    private static class Reference extends Expr {
+        final String key;
+
+        Reference(String key) {
+            this.key = key;
+        }
+    }
+
+    private static class Aggregate extends Expr {
+        final int function;
+        final String from;
+        final String to;
+
+        Aggregate(int function, String from, String to) {
+            this.function = function;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class Negate extends Expr {
+        final Expr operand;
+
+        Negate(Expr operand) {
+            this.operand = operand;
+        }
+    }
+
+    private static class Binary extends Expr {
+        final char operator;
+        final Expr left;
+        final Expr right;
+
+        Binary(char operator, Expr left, Expr right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * One growable list of ints per owner, packed CSR style as slices of one shared int[] with some slack.
+     * A full slice is moved to the end of the pool with double the capacity, and the pool is compacted once more
+     * than half of it is abandoned slices. Elements of owner are at(i) for start(owner) <= i < end(owner).
+     */
+    private static class IntLists {
+        private int[] start = new int[INITIAL_CAPACITY];
+        private int[] count = new int[INITIAL_CAPACITY];
+        private int[] capacity = new int[INITIAL_CAPACITY];
+        private int[] pool = new int[INITIAL_CAPACITY];
+        private int poolSize;
+        private int poolGarbage;
+        private int owners;
+
+        void ensureOwners(int n) {
+            if (n > start.length) {
+                int length = Math.max(n, start.length * 2);
+                start = Arrays.copyOf(start, length);
+                count = Arrays.copyOf(count, length);
+                capacity = Arrays.copyOf(capacity, length);
+            }
+            owners = Math.max(owners, n);
+        }
+
+        int start(int owner) {
+            return start[owner];
+        }
+
+        int end(int owner) {
+            return start[owner] + count[owner];
+        }
+
+        int at(int i) {
+            return pool[i];
+        }
+
+        void add(int owner, int value) {
+            if (count[owner] == capacity[owner]) {
+                relocate(owner, Math.max(2, capacity[owner] * 2));
+            }
+            pool[start[owner] + count[owner]++] = value;
+        }
+
+        void remove(int owner, int value) {
+            int last = start[owner] + count[owner] - 1;
+            for (int i = start[owner]; i <= last; i++) {
+                if (pool[i] == value) {
+                    pool[i] = pool[last];
+                    count[owner]--;
+                    return;
+                }
+            }
+        }
+
+        private void relocate(int owner, int newCapacity) {
+            if (poolSize + newCapacity > pool.length) {
+                if (poolGarbage > poolSize / 2) {
+                    compact();
+                }
+                if (poolSize + newCapacity > pool.length) {
+                    pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + newCapacity));
+                }
+            }
+            System.arraycopy(pool, start[owner], pool, poolSize, count[owner]);
+            poolGarbage += capacity[owner];
+            start[owner] = poolSize;
+            capacity[owner] = newCapacity;
+            poolSize += newCapacity;
+        }
+
+        private void compact() {
+            int[] compacted = new int[pool.length];
+            int next = 0;
+            for (int owner = 0; owner < owners; owner++) {
+                System.arraycopy(pool, start[owner], compacted, next, count[owner]);
+                start[owner] = next;
+                next += capacity[owner];
+            }
+            pool = compacted;
+            poolSize = next;
+            poolGarbage = 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        FormulaSpreadsheet spreadsheet = new FormulaSpreadsheet();
+
+        spreadsheet.set("a", 1);
+        spreadsheet.set("b", 5);
+        assert spreadsheet.get("a") == 1;
+        assert spreadsheet.get("b") == 5;
+        try {
+            spreadsheet.get("c");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell c doesn't exist");
+        }
+        spreadsheet.set("c", "a", "b");
+        assert spreadsheet.get("c") == 6;
+        spreadsheet.set("d", "a", "c");
+        assert spreadsheet.get("d") == 7;
+        try {
+            spreadsheet.set("d", null, "a");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Both child1 and child2 must be passed as arguments");
+        }
+        spreadsheet.set("e", "c", "d");
+        spreadsheet.set("f", 5);
+        try {
+            spreadsheet.set("b", "f", "e");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+
+        // Arithmetic
+        spreadsheet.set("g", "a * (b - 3) + -c * 2 - 1");
+        assert spreadsheet.get("g") == 1 * (5 - 3) + -6 * 2 - 1;
+        spreadsheet.set("a", 4);
+        assert spreadsheet.get("g") == 4 * (5 - 3) + -9 * 2 - 1;
+        try {
+            spreadsheet.set("h", "a + ");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Invalid formula a +  at position 4");
+        }
+        try {
+            spreadsheet.set("h", "a / b");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Invalid formula a / b at position 2");
+        }
+        try {
+            spreadsheet.set("h", "a + z");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell z doesn't exist");
+        }
+
+        // Ranges, empty cells add 0 to SUM and are skipped by MIN and MAX
+        FormulaSpreadsheet sheet = new FormulaSpreadsheet();
+        sheet.set("A1", 3);
+        sheet.set("A2", 7);
+        sheet.set("B1", -2);
+        sheet.set("total", "SUM(A1:B3)");
+        sheet.set("low", "MIN(A1:B3)");
+        sheet.set("high", "MAX(B3:A1) + 1");
+        assert sheet.get("total") == 8;
+        assert sheet.get("low") == -2;
+        assert sheet.get("high") == 8;
+        try {
+            sheet.get("B2");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell B2 doesn't exist");
+        }
+        sheet.set("B2", 10);
+        assert sheet.get("total") == 18;
+        assert sheet.get("high") == 11;
+        sheet.set("B2", 1);
+        assert sheet.get("high") == 8;
+        sheet.set("B1", 5);
+        assert sheet.get("low") == 1;
+        sheet.set("A3", "B1 + B2");
+        assert sheet.get("total") == 22;
+        assert sheet.get("high") == 8;
+        try {
+            sheet.set("B1", "SUM(A1:A3)");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        try {
+            sheet.set("B3", "SUM(A1:B3)");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        try {
+            sheet.set("C5", "SUM(C1:C9)");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        sheet.set("total", 0);
+        sheet.set("B3", "SUM(A1:A2) * 2");
+        assert sheet.get("B3") == 20;
+        assert sheet.get("high") == 21;
+        assert sheet.get("low") == 1;
+
+        // COUNT skips empty cells
+        sheet.set("cells", "COUNT(A1:B4)");
+        assert sheet.get("cells") == 6;
+        sheet.set("A4", 0);
+        assert sheet.get("cells") == 7;
+
+        // Incremental aggregates match a full rescan exactly, long overflow included
+        FormulaSpreadsheet random = new FormulaSpreadsheet();
+        Random rng = new Random(42);
+        int width = 7;
+        int height = 50;
+        long[][] grid = new long[width + 1][height + 1];
+        boolean[][] set = new boolean[width + 1][height + 1];
+        random.set("sum", "SUM(A1:G50)");
+        random.set("count", "COUNT(A1:G50)");
+        random.set("min", "MIN(A1:G50)");
+        random.set("max", "MAX(G50:A1)");
+        random.set("mix", "sum * 3 - min + max");
+        for (int step = 0; step < 20_000; step++) {
+            int c = 1 + rng.nextInt(width);
+            int r = 1 + rng.nextInt(height);
+            long val = rng.nextInt(4) == 0 ? rng.nextLong() : Long.MAX_VALUE - rng.nextInt(1000);
+            random.set(columnName(c) + r, val);
+            grid[c][r] = val;
+            set[c][r] = true;
+
+            long sum = 0;
+            int count = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 1; i <= width; i++) {
+                for (int j = 1; j <= height; j++) {
+                    if (set[i][j]) {
+                        sum += grid[i][j];
+                        count++;
+                        min = Math.min(min, grid[i][j]);
+                        max = Math.max(max, grid[i][j]);
+                    }
+                }
+            }
+            assert random.get("sum") == sum;
+            assert random.get("count") == count;
+            assert random.get("min") == min;
+            assert random.get("max") == max;
+            assert random.get("mix") == sum * 3 - min + max;
+        }
+
+        // One input of a 100k cell SUM changes, the aggregate is updated without scanning the range
+        FormulaSpreadsheet column = new FormulaSpreadsheet();
+        int n = 100_000;
+        for (int i = 1; i <= n; i++) {
+            column.set("A" + i, i);
+        }
+        column.set("sum", "SUM(A1:A" + n + ")");
+        column.set("min", "MIN(A1:A" + n + ")");
+        column.set("max", "MAX(A1:A" + n + ")");
+        column.set("spread", "max - min");
+        long expected = (long) n * (n + 1) / 2;
+        assert column.get("sum") == expected;
+        long start = System.nanoTime();
+        for (int i = 1; i <= 1000; i++) {
+            column.set("A" + i, i + 1);
+            expected++;
+        }
+        long nanos = System.nanoTime() - start;
+        assert column.get("sum") == expected;
+        assert column.get("min") == 2;
+        assert column.get("spread") == n - 2;
+        System.out.println(String.format("Updating one cell of a %d cell range takes %d ns", n, nanos / 1000));
+
+        System.out.println("All tests passed.");
+    }
+}
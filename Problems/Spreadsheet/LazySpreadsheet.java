@@ -0,0 +1,361 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+//  Lazy (pull based) variant of the Spreadsheet where each cell can:
+//  ● Hold a direct integer value
+//  ● Be the sum of two other cells
+//  BasicSpreadsheet, FeaturedSpreadsheet and CompactSpreadsheet push every update through the whole cone of
+//  dependent cells at set time, even if nobody ever reads them. Here set only marks the dependent cells dirty,
+//  and get recomputes a dirty cell (and its dirty children) on demand and caches the result until it is dirtied again.
+
+//  Invariant: if a cell is dirty, so are all the cells depending on it. Marking can therefore stop at cells that are
+//  already dirty, so a bulk import that sets every cell before reading any of them marks each cell at most once.
+
+//  Storage is the same as CompactSpreadsheet: int ids, int[] values and a CSR style int[] edge pool of dependents.
+
+//  Runtime Complexity:
+//  Here, n refers to the number of cells in the current Spreadsheet.
+//  * init is O(1)
+//  * set is O(number of newly dirtied cells + their formula edges), so O(n) over a whole bulk import
+//  * get is O(1) for a clean cell and O(number of dirty cells in its formula cone) for a dirty one
+//  Space Complexity: O(n + e) ints and one boolean per cell, e being the number of formula edges.
+
+import java.util.*;
+
+public class LazySpreadsheet {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final HashMap<String, Integer> ids;
+    private String[] keys;
+    private int[] values;
+    private boolean[] dirty;
+    private int[] child1;
+    private int[] child2;
+    private int size;
+
+    // CSR style adjacency of the cells where each cell is in formula
+    private int[] edgeStart;
+    private int[] edgeCount;
+    private int[] edgeCapacity;
+    private int[] edgePool;
+    private int edgePoolSize;
+    private int edgePoolGarbage;
+
+    // Scratch space reused by every traversal, cells are marked by stamping them with the current epoch
+    private int[] stamp;
+    private int epoch;
+    private int[] stack;
+
+    public LazySpreadsheet() {
+        ids = new HashMap<>();
+        keys = new String[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+        dirty = new boolean[INITIAL_CAPACITY];
+        child1 = new int[INITIAL_CAPACITY];
+        child2 = new int[INITIAL_CAPACITY];
+        edgeStart = new int[INITIAL_CAPACITY];
+        edgeCount = new int[INITIAL_CAPACITY];
+        edgeCapacity = new int[INITIAL_CAPACITY];
+        edgePool = new int[INITIAL_CAPACITY];
+        stamp = new int[INITIAL_CAPACITY];
+        stack = new int[INITIAL_CAPACITY];
+    }
+
+    public int get(String key) {
+        int cell = idOf(key);
+        if (dirty[cell]) {
+            recalculateDirtyCell(cell);
+        }
+        return values[cell];
+    }
+
+    public void set(String key, int val) {
+        int cell = internCell(key);
+
+        if (child1[cell] != NONE) {
+            // Remove dependency of this cell
+            removeDependencyOfCell(cell);
+        }
+
+        values[cell] = val;
+        dirty[cell] = false;
+        markCellsWhereInFormulaDirty(cell);
+    }
+
+    public void set(String key, String child1Key, String child2Key) {
+        if (child1Key == null || child2Key == null) {
+            throw new IllegalArgumentException("Both child1 and child2 must be passed as arguments");
+        }
+        int c1 = idOf(child1Key);
+        int c2 = idOf(child2Key);
+        Integer existing = ids.get(key);
+        if (existing != null && (dependsOn(c1, existing) || dependsOn(c2, existing))) {
+            throw new IllegalArgumentException("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        int cell = internCell(key);
+
+        if (child1[cell] != NONE) {
+            // Remove dependency of this cell
+            removeDependencyOfCell(cell);
+        }
+
+        // Add this cell to the cells in formula to mark dependency
+        child1[cell] = c1;
+        child2[cell] = c2;
+        addDependent(c1, cell);
+        addDependent(c2, cell);
+
+        if (!dirty[cell]) {
+            dirty[cell] = true;
+            markCellsWhereInFormulaDirty(cell);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int idOf(String key) {
+        Integer id = ids.get(key);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format("Cell %s doesn't exist", key));
+        }
+        return id;
+    }
+
+    private int internCell(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (size == values.length) {
+            growCells(size * 2);
+        }
+        int cell = size++;
+        ids.put(key, cell);
+        keys[cell] = key;
+        child1[cell] = NONE;
+        child2[cell] = NONE;
+        return cell;
+    }
+
+    private void growCells(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        edgeStart = Arrays.copyOf(edgeStart, capacity);
+        edgeCount = Arrays.copyOf(edgeCount, capacity);
+        edgeCapacity = Arrays.copyOf(edgeCapacity, capacity);
+        stamp = Arrays.copyOf(stamp, capacity);
+        stack = Arrays.copyOf(stack, capacity);
+    }
+
+    /**
+     * Returns true if cell is target or (transitively) in the formula of target, i.e. target is reachable from cell.
+     */
+    private boolean dependsOn(int target, int cell) {
+        if (target == cell) {
+            return true;
+        }
+        int mark = nextEpoch();
+        int top = 0;
+        stack[top++] = cell;
+        stamp[cell] = mark;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (dependent == target) {
+                    return true;
+                }
+                if (stamp[dependent] != mark) {
+                    stamp[dependent] = mark;
+                    stack[top++] = dependent;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void markCellsWhereInFormulaDirty(int cell) {
+        int top = 0;
+        stack[top++] = cell;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                // An already dirty cell has all of its dependents dirty as well
+                if (!dirty[dependent]) {
+                    dirty[dependent] = true;
+                    stack[top++] = dependent;
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes cell after recomputing the dirty cells in its formula, depth first. The stack only ever holds
+     * the current path from cell down its formula, which is acyclic, so it never holds a cell twice.
+     */
+    private void recalculateDirtyCell(int cell) {
+        int top = 0;
+        stack[top++] = cell;
+        while (top > 0) {
+            int current = stack[top - 1];
+            int c1 = child1[current];
+            int c2 = child2[current];
+            if (dirty[c1]) {
+                stack[top++] = c1;
+            } else if (dirty[c2]) {
+                stack[top++] = c2;
+            } else {
+                values[current] = values[c1] + values[c2];
+                dirty[current] = false;
+                top--;
+            }
+        }
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+
+    private void removeDependencyOfCell(int cell) {
+        removeDependent(child1[cell], cell);
+        removeDependent(child2[cell], cell);
+        child1[cell] = NONE;
+        child2[cell] = NONE;
+    }
+
+    private void addDependent(int cell, int dependent) {
+        if (edgeCount[cell] == edgeCapacity[cell]) {
+            relocateEdges(cell, Math.max(2, edgeCapacity[cell] * 2));
+        }
+        edgePool[edgeStart[cell] + edgeCount[cell]++] = dependent;
+    }
+
+    private void removeDependent(int cell, int dependent) {
+        int start = edgeStart[cell];
+        int last = start + edgeCount[cell] - 1;
+        for (int i = start; i <= last; i++) {
+            if (edgePool[i] == dependent) {
+                edgePool[i] = edgePool[last];
+                edgeCount[cell]--;
+                return;
+            }
+        }
+    }
+
+    private void relocateEdges(int cell, int capacity) {
+        if (edgePoolSize + capacity > edgePool.length) {
+            if (edgePoolGarbage > edgePoolSize / 2) {
+                compactEdges();
+            }
+            if (edgePoolSize + capacity > edgePool.length) {
+                edgePool = Arrays.copyOf(edgePool, Math.max(edgePool.length * 2, edgePoolSize + capacity));
+            }
+        }
+        System.arraycopy(edgePool, edgeStart[cell], edgePool, edgePoolSize, edgeCount[cell]);
+        edgePoolGarbage += edgeCapacity[cell];
+        edgeStart[cell] = edgePoolSize;
+        edgeCapacity[cell] = capacity;
+        edgePoolSize += capacity;
+    }
+
+    private void compactEdges() {
+        int[] compacted = new int[edgePool.length];
+        int next = 0;
+        for (int cell = 0; cell < size; cell++) {
+            System.arraycopy(edgePool, edgeStart[cell], compacted, next, edgeCount[cell]);
+            edgeStart[cell] = next;
+            next += edgeCapacity[cell];
+        }
+        edgePool = compacted;
+        edgePoolSize = next;
+        edgePoolGarbage = 0;
+    }
+
+    public static void main(String[] args) {
+        LazySpreadsheet spreadsheet = new LazySpreadsheet();
+
+        spreadsheet.set("a", 1);
+        spreadsheet.set("b", 5);
+        assert spreadsheet.get("a") == 1;
+        assert spreadsheet.get("b") == 5;
+        try {
+            spreadsheet.get("c");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell c doesn't exist");
+        }
+        spreadsheet.set("c", "a", "b");
+        assert spreadsheet.get("c") == 6;
+        spreadsheet.set("d", "a", "c");
+        assert spreadsheet.get("d") == 7;
+        try {
+            spreadsheet.set("d", null, "a");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Both child1 and child2 must be passed as arguments");
+        }
+
+        spreadsheet.set("e", "c", "d");
+        spreadsheet.set("f", 5);
+        try {
+            spreadsheet.set("b", "f", "e");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        assert spreadsheet.get("b") == 5;
+        assert spreadsheet.get("e") == 13;
+
+        // Reads in between writes only see the latest values
+        spreadsheet.set("a", 2);
+        assert spreadsheet.get("d") == 9;
+        spreadsheet.set("b", 1);
+        assert spreadsheet.get("e") == 8;
+        assert spreadsheet.get("c") == 3;
+
+        // Replacing a formula with a value drops its dependencies
+        spreadsheet.set("c", 100);
+        spreadsheet.set("b", 1000);
+        assert spreadsheet.get("c") == 100;
+        assert spreadsheet.get("e") == 202;
+
+        // Bulk import: build a 1M cell chain of diamonds, update every input and read only the last cell
+        LazySpreadsheet chain = new LazySpreadsheet();
+        int n = 1_000_000;
+        chain.set("x0", 1);
+        chain.set("x1", 1);
+        for (int i = 2; i < n; i++) {
+            chain.set("x" + i, "x" + (i - 1), "x" + (i - 2));
+        }
+        int expectedPrevious = 1;
+        int expected = 1;
+        for (int i = 2; i < n; i++) {
+            int next = expected + expectedPrevious;
+            expectedPrevious = expected;
+            expected = next;
+        }
+        assert chain.get("x" + (n - 1)) == expected;
+        for (int round = 0; round < 1000; round++) {
+            chain.set("x0", round);
+            chain.set("x1", round);
+        }
+        chain.set("x0", 1);
+        chain.set("x1", 1);
+        assert chain.get("x" + (n - 1)) == expected;
+
+        System.out.println("All tests passed.");
+    }
+}
@@ -0,0 +1,10 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+//  Receives the work done by each set, or each commit of a batch, of a Spreadsheet, to find out why some updates are
+//  slow.
+//  Registered with setRecalcListener on BasicSpreadsheet, FeaturedSpreadsheet and CompactSpreadsheet.
+
+public interface RecalcListener {
+    void onRecalc(RecalcStats stats);
+}
@@ -0,0 +1,32 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+//  Work done recalculating the cells depending on one updated cell, or on every cell written in a batch for a commit
+//  of CompactSpreadsheet, whose key is then the first cell written.
+//  ● cellsTouched: number of times a dependent cell was recomputed. A cell reached through several paths counts once
+//    per path when updates are pushed down every path, and once in total when the cone is recomputed in order.
+//  ● edgesWalked: number of formula edges followed, from a cell to a cell where it is in formula.
+//  ● maxDepth: longest chain of formula edges followed from the updated cell.
+//  ● nanos: wall time of the recalculation.
+
+public class RecalcStats {
+    public final String key;
+    public final long cellsTouched;
+    public final long edgesWalked;
+    public final int maxDepth;
+    public final long nanos;
+
+    public RecalcStats(String key, long cellsTouched, long edgesWalked, int maxDepth, long nanos) {
+        this.key = key;
+        this.cellsTouched = cellsTouched;
+        this.edgesWalked = edgesWalked;
+        this.maxDepth = maxDepth;
+        this.nanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("set %s: %d cells touched, %d edges walked, max depth %d, %.3f ms",
+                key, cellsTouched, edgesWalked, maxDepth, nanos / 1e6);
+    }
+}
@@ -0,0 +1,217 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+//  Benchmark of the set recalculation of BasicSpreadsheet, FeaturedSpreadsheet and CompactSpreadsheet.
+//  Workloads, each updating the value of its first cell:
+//  ● chain: x_i = x_(i-1) + one
+//  ● fanout: f_i = root + one
+//  ● diamond: l_k = d_(k-1) + one, r_k = d_(k-1) + one, d_k = l_k + r_k, the number of paths doubles with every layer
+//  ● random: every cell is the sum of two random earlier cells
+
+//  Every engine, workload and size from 10^3 to 10^6 cells runs in its own JVM, like JMH forks, so that a
+//  recursion blowing up or running for ever cannot affect the other runs. A run is killed after TIMEOUT_SECONDS,
+//  and larger sizes of the same engine and workload are skipped after a timeout or an error.
+//  Within a run, the sheet is built, the first cell is updated WARMUP_UPDATES times to warm up the JIT, then
+//  MEASURED_UPDATES more times. The RecalcListener stats of the last update and the mean wall time are reported.
+
+//  Usage:
+//  java SpreadsheetBenchmark                          runs every engine, workload and size
+//  java SpreadsheetBenchmark <engine> <workload> <n>  runs one of them in this JVM
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class SpreadsheetBenchmark {
+    private static final String[] ENGINES = { "basic", "featured", "compact" };
+    private static final String[] WORKLOADS = { "chain", "fanout", "diamond", "random" };
+    private static final int[] SIZES = { 1_000, 10_000, 100_000, 1_000_000 };
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final int WARMUP_UPDATES = 3;
+    private static final int MEASURED_UPDATES = 5;
+
+    /**
+     * Common view of the three engines, which do not share an interface.
+     */
+    private interface Sheet {
+        void set(String key, int val);
+
+        void set(String key, String child1, String child2);
+
+        void setRecalcListener(RecalcListener listener);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 3) {
+            System.out.println(run(args[0], args[1], Integer.parseInt(args[2])));
+            return;
+        }
+
+        for (String workload : WORKLOADS) {
+            for (String engine : ENGINES) {
+                for (int size : SIZES) {
+                    String result = fork(engine, workload, size);
+                    System.out.println(String.format("%-8s %-8s %,10d  %s", workload, engine, size, result));
+                    if (!result.startsWith("build")) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private static String fork(String engine, String workload, int size) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(java, "-Xss512m", "-cp", System.getProperty("java.class.path"),
+                SpreadsheetBenchmark.class.getName(), engine, workload, String.valueOf(size))
+                .redirectErrorStream(true)
+                .start();
+        if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly().waitFor();
+            return String.format("timed out after %d s", TIMEOUT_SECONDS);
+        }
+        return readAll(process.getInputStream()).trim();
+    }
+
+    private static String readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private static String run(String engine, String workload, int size) {
+        Sheet sheet = create(engine);
+        RecalcStats[] last = new RecalcStats[1];
+        try {
+            long start = System.nanoTime();
+            String root = build(sheet, workload, size);
+            long buildNanos = System.nanoTime() - start;
+
+            sheet.setRecalcListener(stats -> last[0] = stats);
+            long measuredNanos = 0;
+            for (int i = 1; i <= WARMUP_UPDATES + MEASURED_UPDATES; i++) {
+                start = System.nanoTime();
+                sheet.set(root, i);
+                if (i > WARMUP_UPDATES) {
+                    measuredNanos += System.nanoTime() - start;
+                }
+            }
+            return String.format("build %,d ms, set %.3f ms, %s", buildNanos / 1_000_000,
+                    measuredNanos / 1e6 / MEASURED_UPDATES, last[0]);
+        } catch (Throwable e) {
+            return String.format("failed with %s", e);
+        }
+    }
+
+    private static Sheet create(String engine) {
+        switch (engine) {
+            case "basic": {
+                BasicSpreadsheet spreadsheet = new BasicSpreadsheet();
+                return new Sheet() {
+                    @Override
+                    public void set(String key, int val) {
+                        spreadsheet.set(key, val);
+                    }
+
+                    @Override
+                    public void set(String key, String child1, String child2) {
+                        spreadsheet.set(key, child1, child2);
+                    }
+
+                    @Override
+                    public void setRecalcListener(RecalcListener listener) {
+                        spreadsheet.setRecalcListener(listener);
+                    }
+                };
+            }
+            case "featured": {
+                FeaturedSpreadsheet spreadsheet = new FeaturedSpreadsheet();
+                return new Sheet() {
+                    @Override
+                    public void set(String key, int val) {
+                        spreadsheet.set(key, val);
+                    }
+
+                    @Override
+                    public void set(String key, String child1, String child2) {
+                        spreadsheet.set(key, child1, child2);
+                    }
+
+                    @Override
+                    public void setRecalcListener(RecalcListener listener) {
+                        spreadsheet.setRecalcListener(listener);
+                    }
+                };
+            }
+            case "compact": {
+                CompactSpreadsheet spreadsheet = new CompactSpreadsheet();
+                return new Sheet() {
+                    @Override
+                    public void set(String key, int val) {
+                        spreadsheet.set(key, val);
+                    }
+
+                    @Override
+                    public void set(String key, String child1, String child2) {
+                        spreadsheet.set(key, child1, child2);
+                    }
+
+                    @Override
+                    public void setRecalcListener(RecalcListener listener) {
+                        spreadsheet.setRecalcListener(listener);
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException(String.format("Unknown engine %s", engine));
+        }
+    }
+
+    /**
+     * Builds a sheet of about n cells and returns the key of the cell to update.
+     */
+    private static String build(Sheet sheet, String workload, int n) {
+        sheet.set("one", 1);
+        switch (workload) {
+            case "chain":
+                sheet.set("x0", 0);
+                for (int i = 1; i < n; i++) {
+                    sheet.set("x" + i, "x" + (i - 1), "one");
+                }
+                return "x0";
+            case "fanout":
+                sheet.set("root", 0);
+                for (int i = 1; i < n; i++) {
+                    sheet.set("f" + i, "root", "one");
+                }
+                return "root";
+            case "diamond":
+                sheet.set("d0", 0);
+                for (int k = 1; 3 * k < n; k++) {
+                    sheet.set("l" + k, "d" + (k - 1), "one");
+                    sheet.set("r" + k, "d" + (k - 1), "one");
+                    sheet.set("d" + k, "l" + k, "r" + k);
+                }
+                return "d0";
+            case "random":
+                Random random = new Random(n);
+                for (int i = 0; i < 10; i++) {
+                    sheet.set("x" + i, i);
+                }
+                for (int i = 10; i < n; i++) {
+                    sheet.set("x" + i, "x" + random.nextInt(i), "x" + random.nextInt(i));
+                }
+                return "x0";
+            default:
+                throw new IllegalArgumentException(String.format("Unknown workload %s", workload));
+        }
+    }
+}
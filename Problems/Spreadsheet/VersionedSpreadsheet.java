@@ -0,0 +1,473 @@
+//  Author: Tushar Jaiswal
+//  Creation Date: 2026-10-19
+
+//  Versioned variant of CompactSpreadsheet for many concurrent readers and one writer at a time.
+//  Each cell can:
+//  ● Hold a direct integer value
+//  ● Be the sum of two other cells
+
+//  Readers never block and never see a half propagated update: get reads the last committed version of the sheet,
+//  and snapshot returns one committed version to read several cells consistently.
+//  Writers are serialized. A set recalculates into a new version and publishes it with a single volatile write once
+//  every cell depending on the updated cell has been recomputed.
+
+//  Versions share their values: values live in pages of PAGE_SIZE ints, and a new version copies the page table
+//  and only the pages it writes to (copy on write). Published pages are never modified again.
+//  The dependency graph is only touched by the writer, so it is the same as CompactSpreadsheet.
+
+//  Runtime Complexity:
+//  Here, n refers to the number of cells in the current Spreadsheet, c refers to the number of cells that
+//  depend directly or transitively on the updated cell and e to the number of formula edges between them.
+//  * init is O(1)
+//  * set is O(c + e + n / PAGE_SIZE + PAGE_SIZE * pages written)
+//  * get is O(1) and lock free
+//  Space Complexity: O(n + e) ints for the latest version, plus the pages of older versions still held by readers.
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class VersionedSpreadsheet {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Written by the writer before the cell is published, a cell with an id >= size of a version is not in it
+    private final ConcurrentHashMap<String, Integer> ids;
+    private volatile Snapshot published;
+
+    // Version being written, its page table and the version each page was last copied in
+    private int version;
+    private int[][] pages;
+    private int[] pageVersion;
+
+    private String[] keys;
+    private int[] child1;
+    private int[] child2;
+    private int size;
+
+    // CSR style adjacency of the cells where each cell is in formula
+    private int[] edgeStart;
+    private int[] edgeCount;
+    private int[] edgeCapacity;
+    private int[] edgePool;
+    private int edgePoolSize;
+    private int edgePoolGarbage;
+
+    // Scratch space reused by every traversal, cells are marked by stamping them with the current epoch
+    private int[] stamp;
+    private int epoch;
+    private int[] inDegree;
+    private int[] stack;
+
+    public VersionedSpreadsheet() {
+        ids = new ConcurrentHashMap<>();
+        pages = new int[0][];
+        pageVersion = new int[0];
+        published = new Snapshot(0, 0, pages);
+        keys = new String[INITIAL_CAPACITY];
+        child1 = new int[INITIAL_CAPACITY];
+        child2 = new int[INITIAL_CAPACITY];
+        edgeStart = new int[INITIAL_CAPACITY];
+        edgeCount = new int[INITIAL_CAPACITY];
+        edgeCapacity = new int[INITIAL_CAPACITY];
+        edgePool = new int[INITIAL_CAPACITY];
+        stamp = new int[INITIAL_CAPACITY];
+        inDegree = new int[INITIAL_CAPACITY];
+        stack = new int[INITIAL_CAPACITY];
+    }
+
+    public int get(String key) {
+        return published.get(key);
+    }
+
+    /**
+     * Returns the last committed version of the sheet, which never changes.
+     */
+    public Snapshot snapshot() {
+        return published;
+    }
+
+    public synchronized void set(String key, int val) {
+        beginVersion();
+        int cell = internCell(key);
+
+        if (child1[cell] != NONE) {
+            // Remove dependency of this cell
+            removeDependencyOfCell(cell);
+        }
+
+        setValue(cell, val);
+        recalculateCellsWhereInFormula(cell);
+        publish();
+    }
+
+    public synchronized void set(String key, String child1Key, String child2Key) {
+        if (child1Key == null || child2Key == null) {
+            throw new IllegalArgumentException("Both child1 and child2 must be passed as arguments");
+        }
+        int c1 = idOf(child1Key);
+        int c2 = idOf(child2Key);
+        Integer existing = ids.get(key);
+        if (existing != null && (dependsOn(c1, existing) || dependsOn(c2, existing))) {
+            throw new IllegalArgumentException("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        beginVersion();
+        int cell = internCell(key);
+
+        if (child1[cell] != NONE) {
+            // Remove dependency of this cell
+            removeDependencyOfCell(cell);
+        }
+
+        // Add this cell to the cells in formula to mark dependency
+        child1[cell] = c1;
+        child2[cell] = c2;
+        addDependent(c1, cell);
+        addDependent(c2, cell);
+
+        setValue(cell, valueOf(c1) + valueOf(c2));
+        recalculateCellsWhereInFormula(cell);
+        publish();
+    }
+
+    public int size() {
+        return published.size;
+    }
+
+    private void beginVersion() {
+        version++;
+        pages = pages.clone();
+    }
+
+    private void publish() {
+        published = new Snapshot(version, size, pages);
+    }
+
+    private int valueOf(int cell) {
+        return pages[cell >>> PAGE_SHIFT][cell & PAGE_MASK];
+    }
+
+    private void setValue(int cell, int val) {
+        int page = cell >>> PAGE_SHIFT;
+        if (pageVersion[page] != version) {
+            // The page may be read by older versions, copy it before writing
+            pages[page] = pages[page].clone();
+            pageVersion[page] = version;
+        }
+        pages[page][cell & PAGE_MASK] = val;
+    }
+
+    private int idOf(String key) {
+        Integer id = ids.get(key);
+        if (id == null || id >= size) {
+            throw new IllegalArgumentException(String.format("Cell %s doesn't exist", key));
+        }
+        return id;
+    }
+
+    private int internCell(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (size == keys.length) {
+            growCells(size * 2);
+        }
+        int cell = size++;
+        if ((cell & PAGE_MASK) == 0) {
+            int page = cell >>> PAGE_SHIFT;
+            pages = Arrays.copyOf(pages, page + 1);
+            pageVersion = Arrays.copyOf(pageVersion, page + 1);
+            pages[page] = new int[PAGE_SIZE];
+            pageVersion[page] = version;
+        }
+        ids.put(key, cell);
+        keys[cell] = key;
+        child1[cell] = NONE;
+        child2[cell] = NONE;
+        return cell;
+    }
+
+    private void growCells(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        child1 = Arrays.copyOf(child1, capacity);
+        child2 = Arrays.copyOf(child2, capacity);
+        edgeStart = Arrays.copyOf(edgeStart, capacity);
+        edgeCount = Arrays.copyOf(edgeCount, capacity);
+        edgeCapacity = Arrays.copyOf(edgeCapacity, capacity);
+        stamp = Arrays.copyOf(stamp, capacity);
+        inDegree = Arrays.copyOf(inDegree, capacity);
+        stack = Arrays.copyOf(stack, capacity);
+    }
+
+    /**
+     * Returns true if cell is target or (transitively) in the formula of target, i.e. target is reachable from cell.
+     */
+    private boolean dependsOn(int target, int cell) {
+        if (target == cell) {
+            return true;
+        }
+        int mark = nextEpoch();
+        int top = 0;
+        stack[top++] = cell;
+        stamp[cell] = mark;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (dependent == target) {
+                    return true;
+                }
+                if (stamp[dependent] != mark) {
+                    stamp[dependent] = mark;
+                    stack[top++] = dependent;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void recalculateCellsWhereInFormula(int cell) {
+        if (edgeCount[cell] == 0) {
+            return;
+        }
+
+        // Collect the cone of cells depending on cell and count the formula edges coming from inside the cone
+        int mark = nextEpoch();
+        int top = 0;
+        stack[top++] = cell;
+        stamp[cell] = mark;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (stamp[dependent] != mark) {
+                    stamp[dependent] = mark;
+                    inDegree[dependent] = 0;
+                    stack[top++] = dependent;
+                }
+                inDegree[dependent]++;
+            }
+        }
+
+        // Recompute the cone in topological order, a cell is ready once all its in-cone children are recomputed
+        top = 0;
+        stack[top++] = cell;
+        while (top > 0) {
+            int current = stack[--top];
+            int end = edgeStart[current] + edgeCount[current];
+            for (int i = edgeStart[current]; i < end; i++) {
+                int dependent = edgePool[i];
+                if (--inDegree[dependent] == 0) {
+                    setValue(dependent, valueOf(child1[dependent]) + valueOf(child2[dependent]));
+                    stack[top++] = dependent;
+                }
+            }
+        }
+    }
+
+    private int nextEpoch() {
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        return epoch;
+    }
+
+    private void removeDependencyOfCell(int cell) {
+        removeDependent(child1[cell], cell);
+        removeDependent(child2[cell], cell);
+        child1[cell] = NONE;
+        child2[cell] = NONE;
+    }
+
+    private void addDependent(int cell, int dependent) {
+        if (edgeCount[cell] == edgeCapacity[cell]) {
+            relocateEdges(cell, Math.max(2, edgeCapacity[cell] * 2));
+        }
+        edgePool[edgeStart[cell] + edgeCount[cell]++] = dependent;
+    }
+
+    private void removeDependent(int cell, int dependent) {
+        int start = edgeStart[cell];
+        int last = start + edgeCount[cell] - 1;
+        for (int i = start; i <= last; i++) {
+            if (edgePool[i] == dependent) {
+                edgePool[i] = edgePool[last];
+                edgeCount[cell]--;
+                return;
+            }
+        }
+    }
+
+    private void relocateEdges(int cell, int capacity) {
+        if (edgePoolSize + capacity > edgePool.length) {
+            if (edgePoolGarbage > edgePoolSize / 2) {
+                compactEdges();
+            }
+            if (edgePoolSize + capacity > edgePool.length) {
+                edgePool = Arrays.copyOf(edgePool, Math.max(edgePool.length * 2, edgePoolSize + capacity));
+            }
+        }
+        System.arraycopy(edgePool, edgeStart[cell], edgePool, edgePoolSize, edgeCount[cell]);
+        edgePoolGarbage += edgeCapacity[cell];
+        edgeStart[cell] = edgePoolSize;
+        edgeCapacity[cell] = capacity;
+        edgePoolSize += capacity;
+    }
+
+    private void compactEdges() {
+        int[] compacted = new int[edgePool.length];
+        int next = 0;
+        for (int cell = 0; cell < size; cell++) {
+            System.arraycopy(edgePool, edgeStart[cell], compacted, next, edgeCount[cell]);
+            edgeStart[cell] = next;
+            next += edgeCapacity[cell];
+        }
+        edgePool = compacted;
+        edgePoolSize = next;
+        edgePoolGarbage = 0;
+    }
+
+    /**
+     * One committed version of the sheet.
+     */
+    public final class Snapshot {
+        private final int version;
+        private final int size;
+        private final int[][] pages;
+
+        private Snapshot(int version, int size, int[][] pages) {
+            this.version = version;
+            this.size = size;
+            this.pages = pages;
+        }
+
+        public int get(String key) {
+            Integer id = ids.get(key);
+            if (id == null || id >= size) {
+                throw new IllegalArgumentException(String.format("Cell %s doesn't exist", key));
+            }
+            return pages[id >>> PAGE_SHIFT][id & PAGE_MASK];
+        }
+
+        public int version() {
+            return version;
+        }
+    }
+
+    public static void main(String[] args) {
+        VersionedSpreadsheet spreadsheet = new VersionedSpreadsheet();
+
+        spreadsheet.set("a", 1);
+        spreadsheet.set("b", 5);
+        assert spreadsheet.get("a") == 1;
+        assert spreadsheet.get("b") == 5;
+        try {
+            spreadsheet.get("c");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cell c doesn't exist");
+        }
+        spreadsheet.set("c", "a", "b");
+        assert spreadsheet.get("c") == 6;
+        spreadsheet.set("d", "a", "c");
+        assert spreadsheet.get("d") == 7;
+        try {
+            spreadsheet.set("d", null, "a");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Both child1 and child2 must be passed as arguments");
+        }
+
+        spreadsheet.set("e", "c", "d");
+        spreadsheet.set("f", 5);
+        try {
+            spreadsheet.set("b", "f", "e");
+            assert false;
+        } catch (IllegalArgumentException e) {
+            assert e.getMessage().equals("Cycle detected. Formula cannot create a cyclic dependency");
+        }
+        // A rejected formula leaves the sheet untouched
+        assert spreadsheet.get("b") == 5;
+        assert spreadsheet.get("e") == 13;
+
+        // Diamond: a feeds d both directly and through c
+        spreadsheet.set("a", 2);
+        assert spreadsheet.get("c") == 7;
+        assert spreadsheet.get("d") == 9;
+        assert spreadsheet.get("e") == 16;
+
+        // Replacing a formula with a value drops its dependencies
+        spreadsheet.set("c", 100);
+        spreadsheet.set("b", 1);
+        assert spreadsheet.get("c") == 100;
+        assert spreadsheet.get("d") == 102;
+        assert spreadsheet.get("e") == 202;
+
+        // Snapshots don't change after later writes
+        Snapshot before = spreadsheet.snapshot();
+        spreadsheet.set("a", 1000);
+        assert before.get("d") == 102;
+        assert spreadsheet.get("d") == 1100;
+        assert spreadsheet.snapshot().version() > before.version();
+
+        // Stress test: one writer keeps updating x while readers check that c_i == (i + 2) * x in every version they see
+        VersionedSpreadsheet chain = new VersionedSpreadsheet();
+        int length = 5000;
+        chain.set("x", 1);
+        chain.set("c0", "x", "x");
+        for (int i = 1; i < length; i++) {
+            chain.set("c" + i, "c" + (i - 1), "x");
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong violations = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread reader = new Thread(() -> {
+                int lastX = 0;
+                while (!done.get()) {
+                    Snapshot snapshot = chain.snapshot();
+                    int x = snapshot.get("x");
+                    for (int i = 0; i < length; i += 97) {
+                        if (snapshot.get("c" + i) != (i + 2) * x) {
+                            violations.incrementAndGet();
+                        }
+                    }
+                    // Versions are published in order, a later read never sees an older value
+                    int latestX = chain.get("x");
+                    if (x < lastX || latestX < x) {
+                        violations.incrementAndGet();
+                    }
+                    lastX = latestX;
+                    reads.incrementAndGet();
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (int x = 2; x <= 2000; x++) {
+            chain.set("x", x);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        assert violations.get() == 0;
+        assert chain.get("c" + (length - 1)) == (length + 1) * 2000;
+        System.out.println(String.format("%d consistent snapshot reads during 2000 writes", reads.get()));
+
+        System.out.println("All tests passed.");
+    }
+}